@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams.bench;
+
+import io.github.bckfnn.reactstreams.BatchSubscriber;
+import io.github.bckfnn.reactstreams.Stream;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Compare a map/filter/skip/take pipeline over an array where the elements are passed one by one with 
+ * the same pipeline where the elements are passed in batches.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchBenchmark {
+    @Param({ "1000", "100000" })
+    int size;
+
+    Integer[] values;
+
+    /**
+     * Create the input.
+     */
+    @Setup
+    public void setup() {
+        values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+    }
+
+    private Stream<Integer> pipeline(Stream<Integer> source) {
+        return source
+        .map(x -> x + 1)
+        .filter(x -> (x & 1) == 0)
+        .skip(10)
+        .map(x -> x * 3)
+        .take(size);
+    }
+
+    /**
+     * A plain subscriber between the source and the pipeline turn off batches.
+     * @param bh the black hole.
+     */
+    @Benchmark
+    public void elements(Blackhole bh) {
+        Stream<Integer> source = s -> Stream.from(values).subscribe(new Subscriber<Integer>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                s.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(Integer value) {
+                s.onNext(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                s.onError(t);
+            }
+
+            @Override
+            public void onComplete() {
+                s.onComplete();
+            }
+        });
+        pipeline(source).subscribe(new Sink<Integer>(bh));
+    }
+
+    /**
+     * The array is passed through the pipeline in batches.
+     * @param bh the black hole.
+     */
+    @Benchmark
+    public void batches(Blackhole bh) {
+        pipeline(Stream.from(values)).subscribe(new BatchSink<Integer>(bh));
+    }
+
+    /**
+     * A sink that accept batches.
+     * @param <T> type of elements.
+     */
+    static class BatchSink<T> extends Sink<T> implements BatchSubscriber<T> {
+        private final Blackhole bh;
+
+        BatchSink(Blackhole bh) {
+            super(bh);
+            this.bh = bh;
+        }
+
+        @Override
+        public void onNextBatch(Object[] values, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                bh.consume(values[i]);
+            }
+        }
+    }
+}
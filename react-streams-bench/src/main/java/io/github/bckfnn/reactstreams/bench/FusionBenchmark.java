@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams.bench;
+
+import io.github.bckfnn.reactstreams.Stream;
+import io.github.bckfnn.reactstreams.ops.Filters;
+import io.github.bckfnn.reactstreams.ops.Transforms;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compare a 10 stage map/filter pipeline that is fused into a single processor with the 
+ * same pipeline built from one processor per stage.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FusionBenchmark {
+    @Param({ "1000", "100000" })
+    int size;
+
+    Integer[] values;
+
+    /**
+     * Create the input.
+     */
+    @Setup
+    public void setup() {
+        values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+    }
+
+    /**
+     * Each map() and filter() add a new processor.
+     * @param bh the black hole.
+     */
+    @Benchmark
+    public void chained(Blackhole bh) {
+        Stream.from(values)
+        .chain(new Transforms.Map<Integer, Integer>(x -> x + 1))
+        .chain(new Filters.Filter<Integer>(x -> (x & 1) == 0))
+        .chain(new Transforms.Map<Integer, Integer>(x -> x + 1))
+        .chain(new Filters.Filter<Integer>(x -> (x & 3) != 0))
+        .chain(new Transforms.Map<Integer, Integer>(x -> x + 1))
+        .chain(new Filters.Filter<Integer>(x -> x > 10))
+        .chain(new Transforms.Map<Integer, Integer>(x -> x + 1))
+        .chain(new Filters.Filter<Integer>(x -> x != 100))
+        .chain(new Transforms.Map<Integer, Integer>(x -> x + 1))
+        .chain(new Filters.Filter<Integer>(x -> x >= 0))
+        .subscribe(new Sink<Integer>(bh));
+    }
+
+    /**
+     * The map() and filter() are fused into one processor.
+     * @param bh the black hole.
+     */
+    @Benchmark
+    public void fused(Blackhole bh) {
+        Stream.from(values)
+        .map(x -> x + 1)
+        .filter(x -> (x & 1) == 0)
+        .map(x -> x + 1)
+        .filter(x -> (x & 3) != 0)
+        .map(x -> x + 1)
+        .filter(x -> x > 10)
+        .map(x -> x + 1)
+        .filter(x -> x != 100)
+        .map(x -> x + 1)
+        .filter(x -> x >= 0)
+        .subscribe(new Sink<Integer>(bh));
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams.bench;
+
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * A subscriber that request all elements and consume them in a black hole.
+ * @param <T> type of elements.
+ */
+public class Sink<T> implements Subscriber<T> {
+    private final Blackhole bh;
+
+    /**
+     * Constructor.
+     * @param bh the black hole.
+     */
+    public Sink(Blackhole bh) {
+        this.bh = bh;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        s.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(T value) {
+        bh.consume(value);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        bh.consume(t);
+    }
+
+    @Override
+    public void onComplete() {
+    }
+}
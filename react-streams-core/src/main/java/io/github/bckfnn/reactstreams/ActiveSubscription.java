@@ -13,18 +13,41 @@
  */
 package io.github.bckfnn.reactstreams;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 import org.reactivestreams.Subscriber;
 
 /**
  * Helper class that manage a synchronous publishing of elements in an iterator like structure.
+ * <p>
+ * The elements are emitted from a work-in-progress drain loop. Only one thread at a time will be 
+ * inside the loop, a request(n) that arrive while another thread (or a recursive call from onNext) 
+ * is emitting only add to the demand and bump the work counter, and the thread that is already 
+ * emitting will pick up the new demand before it leaves the loop. 
+ * Within the loop the elements are emitted in batches, the demand is read once per batch and 
+ * the number of emitted elements is subtracted once at the end of the batch.
+ * When the demand is unbounded (<code>Long.MAX_VALUE</code>) all the elements are emitted in a plain loop 
+ * without any demand bookkeeping.
+ * <p>
+ * When the subscriber is a {@link BatchSubscriber}, the elements are emitted in slices with 
+ * {@link #emitSlice(long)} instead of one by one.
  *
  * @param <T> type of elements.
  */
+@SuppressWarnings("rawtypes")
 public abstract class ActiveSubscription<T> extends BaseSubscription<T> {
+    private static final AtomicIntegerFieldUpdater<ActiveSubscription> WIP =
+            AtomicIntegerFieldUpdater.newUpdater(ActiveSubscription.class, "wip");
+
+    /**
+     * Number of request() calls that have not yet been seen by the drain loop.
+     */
+    private volatile int wip = 0;
+
     /**
-     * True when request(n) have been entered once.
+     * The maximum number of elements that the default {@link #emitSlice(long)} put in one batch.
      */
-    public boolean recursion = false;
+    public static final int BATCH_SIZE = 256;
 
     /**
      * Constructor.
@@ -44,19 +67,94 @@ public abstract class ActiveSubscription<T> extends BaseSubscription<T> {
      */
     public abstract T getOne();
 
+    /**
+     * Emit up to <code>max</code> elements as a single batch, without changing the pending demand. 
+     * Only called when the subscriber is a {@link BatchSubscriber} and there are more elements. 
+     * The default implementation collect up to {@link #BATCH_SIZE} elements with getOne() into a new array.
+     * Sources that already hold their elements in an array can override it to emit a slice of that array.
+     * @param max the maximum number of elements.
+     * @return the number of emitted elements.
+     */
+    protected long emitSlice(long max) {
+        int n = (int) Math.min(max, BATCH_SIZE);
+        Object[] buffer = new Object[n];
+        int i = 0;
+        while (i < n && hasMore()) {
+            buffer[i++] = getOne();
+        }
+        emitBatch(buffer, 0, i);
+        return i;
+    }
+
     @Override
     public void request(long elements) {
         super.request(elements);
-        if (recursion) {
+        drain();
+    }
+
+    /**
+     * Emit elements while there is demand and more elements.
+     */
+    protected void drain() {
+        if (WIP.getAndIncrement(this) != 0) {
             return;
         }
-        recursion = true;
-        while (getPendingDemand() > 0 && !isCancelled() && hasMore()) {
-            sendNext(getOne());
+        int missed = 1;
+        boolean batch = isBatch();
+        for (;;) {
+            long requested = getPendingDemand();
+            if (requested == Long.MAX_VALUE) {
+                drainUnbounded();
+                return;
+            }
+            long emitted = 0;
+            while (emitted != requested) {
+                if (isCancelled()) {
+                    return;
+                }
+                if (!hasMore()) {
+                    sendComplete();
+                    return;
+                }
+                if (batch) {
+                    emitted += emitSlice(requested - emitted);
+                } else {
+                    emit(getOne());
+                    emitted++;
+                }
+            }
+            if (isCancelled()) {
+                return;
+            }
+            if (!hasMore()) {
+                sendComplete();
+                return;
+            }
+            if (emitted != 0) {
+                produced(emitted);
+            }
+            missed = WIP.addAndGet(this, -missed);
+            if (missed == 0) {
+                return;
+            }
         }
-        if (!hasMore() && !isCancelled()) {
-            sendComplete();
+    }
+
+    private void drainUnbounded() {
+        boolean batch = isBatch();
+        for (;;) {
+            if (isCancelled()) {
+                return;
+            }
+            if (!hasMore()) {
+                sendComplete();
+                return;
+            }
+            if (batch) {
+                emitSlice(Long.MAX_VALUE);
+            } else {
+                emit(getOne());
+            }
         }
-        recursion = false;
     }
 }
@@ -13,28 +13,86 @@
  */
 package io.github.bckfnn.reactstreams;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 
 /**
  * Basic implementation of a processor step that manage both the input subscription where back pressure is applied and
  * a single output subscription where the elements are send.
+ * <p>
+ * By default the demand from the output subscription is forwarded to the input subscription, and elements that 
+ * are consumed without being emitted are replaced by calling {@link #sendRequest()}. The replacement requests 
+ * are collected and sent upstream in a single request when the outstanding input demand is used up.
+ * <p>
+ * When a prefetch is set with {@link #setPrefetch(int)}, the output demand is not forwarded. Instead 
+ * <code>prefetch</code> elements are requested from the input at the first output request, and the consumed 
+ * elements are re-requested in chunks when 75% of the prefetch have been consumed. This is meant for aggregating 
+ * operations that consume all their input before they emit anything.
+ * <p>
+ * When <code>Long.MAX_VALUE</code> is requested from the input, the processor enters an unbounded mode where
+ * the outstanding input demand and the consumed elements are no longer counted.
+ * <p>
+ * A processor is a {@link BatchSubscriber}. A batch from the input is passed to {@link #doNextBatch(Object[], int, int)}
+ * which by default call doNext() for each element. Operations that can handle a whole slice in a tight loop 
+ * override doNextBatch() and emit their output with {@link #sendNextBatch(Object[], int, int)}.
  *
  * @param <I> type of input elements.
  * @param <O> type of output elements.
  */
-public abstract class BaseProcessor<I, O> implements Pipe<I, O> {
-    private Subscription inputSubscription;
-    private BaseSubscription<O> outputSubscription;
+public abstract class BaseProcessor<I, O> implements Pipe<I, O>, BatchSubscriber<I> {
+    /**
+     * The default number of elements for operations that request ahead of the output demand.
+     */
+    public static final int DEFAULT_PREFETCH = 256;
+
+    /**
+     * A prefetch value that request <code>Long.MAX_VALUE</code> elements from the input.
+     */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private volatile Subscription inputSubscription;
+    /** demand requested before the input subscription is received. */
+    private final AtomicLong inputDeferred = new AtomicLong();
+    /** true when cancel is sent before the input subscription is received. */
+    private volatile boolean inputCancelled = false;
+    private volatile BaseSubscription<O> outputSubscription;
     /** the number received elements that have not yet been handled. */
     private int queue = 0;
     /** true when onComplete is received. */
     private boolean complete = false;
+    /** the number of elements requested from the input that have not yet been received. */
+    private final AtomicLong outstanding = new AtomicLong();
+    /** the number of consumed elements that have not yet been re-requested. */
+    private long consumed = 0;
+    /** the number of elements to request from the input ahead of the output demand, or 0. */
+    private int prefetch = 0;
+    /** the number of consumed elements that trigger a new input request when prefetching. */
+    private int limit = Integer.MAX_VALUE;
+    /** true when the prefetch have been requested. */
+    private final AtomicBoolean prefetched = new AtomicBoolean();
+    /** true when Long.MAX_VALUE have been requested from the input. */
+    private volatile boolean unbounded = false;
+    /** the characteristics of the input stream. */
+    private int inputCharacteristics = 0;
+    /** the size of the input stream. */
+    private long inputSize = Long.MAX_VALUE;
 
 
     @Override
     public void onSubscribe(Subscription s) {
         this.inputSubscription = s;
+        if (inputCancelled) {
+            s.cancel();
+            return;
+        }
+        long n = inputDeferred.getAndSet(0);
+        if (n > 0) {
+            s.request(n);
+        }
     }
 
     /**
@@ -48,7 +106,96 @@ public abstract class BaseProcessor<I, O> implements Pipe<I, O> {
     @Override 
     public void onNext(I value) {
         queue++;
+        if (unbounded) {
+            doNext(value);
+            return;
+        }
+        outstanding.decrementAndGet();
         doNext(value);
+        if (consumed > 0 && outstanding.get() <= 0) {
+            requestConsumed();
+        }
+    }
+
+    @Override
+    public void onNextBatch(Object[] values, int offset, int length) {
+        queue += length;
+        if (unbounded) {
+            doNextBatch(values, offset, length);
+            return;
+        }
+        outstanding.addAndGet(-length);
+        doNextBatch(values, offset, length);
+        if (consumed > 0 && outstanding.get() <= 0) {
+            requestConsumed();
+        }
+    }
+
+    /**
+     * Implementation method for a batch of received elements. It has the same responsibilities as doNext() 
+     * for each element in the batch. The default implementation call doNext() for each element.
+     * @param values an array with elements of type I.
+     * @param offset the index of the first element.
+     * @param length the number of elements.
+     */
+    @SuppressWarnings("unchecked")
+    public void doNextBatch(Object[] values, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            doNext((I) values[i]);
+        }
+    }
+
+    /**
+     * Set the number of elements that is requested from the input ahead of the output demand. 
+     * A prefetch of 0 forward the output demand to the input and a prefetch of {@link #UNBOUNDED} request 
+     * all the input elements at once.
+     * Must be called before the processor is subscribed to.
+     * @param prefetch the number of elements to request.
+     */
+    public void setPrefetch(int prefetch) {
+        this.prefetch = prefetch;
+        this.limit = prefetch > 0 ? prefetch - (prefetch >> 2) : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return the number of elements that is requested from the input ahead of the output demand.
+     */
+    public int getPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Subscribe this processor to the input publisher, called by {@link Stream#chain(BaseProcessor)}.
+     * Subclasses can defer the subscription until the processor itself is subscribed to.
+     * @param input the input publisher.
+     */
+    public void subscribeTo(Publisher<? extends I> input) {
+        input.subscribe(this);
+    }
+
+    /**
+     * Set the characteristics and size of the input stream, called by {@link Stream#chain(BaseProcessor)} 
+     * before the processor is subscribed to the input.
+     * @param characteristics the characteristics of the input.
+     * @param size the size of the input.
+     */
+    public void setInputCharacteristics(int characteristics, long size) {
+        this.inputCharacteristics = characteristics;
+        this.inputSize = size;
+    }
+
+    /**
+     * @return the characteristics of the input stream.
+     */
+    protected int getInputCharacteristics() {
+        return inputCharacteristics;
+    }
+
+    /**
+     * @return the size of the input stream, or <code>Long.MAX_VALUE</code> when it is unknown.
+     */
+    protected long getInputSize() {
+        return inputSize;
     }
 
     @Override
@@ -74,6 +221,27 @@ public abstract class BaseProcessor<I, O> implements Pipe<I, O> {
         }
     }
 
+    /**
+     * Must be called once for each of the <code>n</code> onNext() that is handled together.
+     * @param n the number of handled elements.
+     */
+    public void handled(int n) {
+        queue -= n;
+        if (complete && queue == 0) {
+            sendComplete();
+        }
+    }
+
+    /**
+     * Send a slice of values to the output subscription, as a batch if the output subscriber accept it.
+     * @param values an array with values of type O.
+     * @param offset the index of the first value.
+     * @param length the number of values.
+     */
+    public void sendNextBatch(Object[] values, int offset, int length) {
+        outputSubscription.sendNextBatch(values, offset, length);
+    }
+
     /**
      * Send a new value to the output subscription.
      * @param value the value.
@@ -97,11 +265,41 @@ public abstract class BaseProcessor<I, O> implements Pipe<I, O> {
         outputSubscription.sendComplete();
     }
 
+    /**
+     * @return true when a subscriber have subscribed to the output of this processor.
+     */
+    protected boolean hasSubscriber() {
+        return outputSubscription != null;
+    }
+
+    /**
+     * @return the amount of unfulfilled demand on the output subscription.
+     */
+    protected long getPendingDemand() {
+        BaseSubscription<O> s = outputSubscription;
+        return s == null ? 0 : s.getPendingDemand();
+    }
+
+    /**
+     * @return true if the output subscription is cancelled or completed.
+     */
+    protected boolean isCancelled() {
+        BaseSubscription<O> s = outputSubscription;
+        return s != null && s.isCancelled();
+    }
+
     /**
      * Send a cancel signal to the input subscription.
      */
     public void sendCancel() {
-        inputSubscription.cancel();
+        Subscription s = inputSubscription;
+        if (s == null) {
+            inputCancelled = true;
+            s = inputSubscription;
+        }
+        if (s != null) {
+            s.cancel();
+        }
     }
 
     /**
@@ -109,41 +307,112 @@ public abstract class BaseProcessor<I, O> implements Pipe<I, O> {
      * @param n the number of element requested.
      */
     public void sendRequest(long n) {
-        inputSubscription.request(n);
+        Subscription s = inputSubscription;
+        if (s == null) {
+            // the input is subscribed asynchronously, the demand is sent from onSubscribe().
+            inputDeferred.accumulateAndGet(n, BaseSubscription::addCap);
+            s = inputSubscription;
+            if (s == null) {
+                return;
+            }
+            n = inputDeferred.getAndSet(0);
+            if (n == 0) {
+                return;
+            }
+        }
+        if (!unbounded && outstanding.accumulateAndGet(n, BaseSubscription::addCap) == Long.MAX_VALUE) {
+            unbounded = true;
+        }
+        s.request(n);
     }
 
     /**
-     * Send a request signal for one element to the input subscription.
+     * Replace an input element that was consumed without emitting an output element.
+     * The replacement requests are collected and sent as a single request when all the outstanding input 
+     * demand is received or when the prefetch limit is reached.
      */
     public void sendRequest() {
-        sendRequest(1);
+        if (unbounded) {
+            return;
+        }
+        consumed++;
+        if (consumed >= limit || outstanding.get() <= 0) {
+            requestConsumed();
+        }
+    }
+
+    private void requestConsumed() {
+        long n = consumed;
+        consumed = 0;
+        sendRequest(n);
+    }
+
+    /**
+     * Called when the output subscription request more elements.
+     * @param n the number of elements.
+     */
+    private void outputRequest(long n) {
+        if (prefetch > 0) {
+            if (prefetched.compareAndSet(false, true)) {
+                sendRequest(prefetch == UNBOUNDED ? Long.MAX_VALUE : prefetch);
+            }
+        } else {
+            sendRequest(n);
+        }
     }
 
     @Override
     public void subscribe(Subscriber<? super O> subscriber) {
-        outputSubscription = new BaseSubscription<O>(subscriber) {
-            @Override
-            public void request(long n) {
-                super.request(n);
-                if (isActive() &&  !isCancelled()) {
-                    sendRequest(n);
+        OutputSubscription s = new OutputSubscription(subscriber);
+        outputSubscription = s;
+        subscriber.onSubscribe(s);
+        s.activate();
+    }
+
+    /**
+     * The output subscription. Demand that is requested before the subscription is activated is 
+     * collected and forwarded exactly once when activate() is called, even when request() is 
+     * called from another thread.
+     */
+    private class OutputSubscription extends BaseSubscription<O> {
+        private final AtomicLong deferred = new AtomicLong();
+
+        OutputSubscription(Subscriber<? super O> subscriber) {
+            super(subscriber);
+        }
+
+        @Override
+        public void request(long n) {
+            super.request(n);
+            if (isCancelled() || n <= 0) {
+                return;
+            }
+            if (!isActive()) {
+                deferred.accumulateAndGet(n, BaseSubscription::addCap);
+                if (!isActive()) {
+                    return;
+                }
+                n = deferred.getAndSet(0);
+                if (n == 0) {
+                    return;
                 }
             }
+            outputRequest(n);
+        }
 
-            @Override
-            public void cancel() {
-                super.cancel();
-                sendCancel();
-            }
+        @Override
+        public void cancel() {
+            super.cancel();
+            sendCancel();
+        }
 
-            public void activate() {
-                super.activate();
-                if (getPendingDemand() > 0) {
-                    sendRequest(getPendingDemand());
-                }
+        @Override
+        public void activate() {
+            super.activate();
+            long n = deferred.getAndSet(0);
+            if (n > 0 && !isCancelled()) {
+                outputRequest(n);
             }
-        };
-        subscriber.onSubscribe(outputSubscription);
-        outputSubscription.activate();
+        }
     }
 }
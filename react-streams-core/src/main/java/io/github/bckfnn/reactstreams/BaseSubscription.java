@@ -13,6 +13,9 @@
  */
 package io.github.bckfnn.reactstreams;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 
@@ -21,14 +24,27 @@ import org.reactivestreams.Subscription;
  * The class will track the amount of demand that it has received with request() method and which have not 
  * yet been send to the subscriber with the sendNext() method.
  * It also track is the subscription have been cancelled. 
+ * <p>
+ * The demand and the cancelled state are updated atomically, so request() and cancel() can be called
+ * from any thread while the publisher is calling sendNext(). The accumulated demand is capped at 
+ * <code>Long.MAX_VALUE</code> (spec 3.17). The publisher must still make sure that the calls to 
+ * sendNext(), sendComplete() and sendError() are serialized (spec 1.3), see {@link ActiveSubscription}.
  *
  * @param <T> type of output elements.
  */
+@SuppressWarnings("rawtypes")
 public class BaseSubscription<T> implements Subscription {
-    private Subscriber<? super T> subscriber;
-    private boolean cancelled = false;
-    private long pendingDemand;
-    private boolean active = false;
+    private static final AtomicLongFieldUpdater<BaseSubscription> PENDING_DEMAND =
+            AtomicLongFieldUpdater.newUpdater(BaseSubscription.class, "pendingDemand");
+    private static final AtomicIntegerFieldUpdater<BaseSubscription> CANCELLED =
+            AtomicIntegerFieldUpdater.newUpdater(BaseSubscription.class, "cancelled");
+
+    private volatile Subscriber<? super T> subscriber;
+    private volatile int cancelled = 0;
+    private volatile long pendingDemand;
+    private volatile boolean active = false;
+    /** true when the subscriber is a BatchSubscriber. */
+    private final boolean batch;
 
     /**
      * Constructor.
@@ -36,11 +52,12 @@ public class BaseSubscription<T> implements Subscription {
      */
     public BaseSubscription(Subscriber<? super T> subscriber2) {
         this.subscriber = subscriber2;
+        this.batch = subscriber2 instanceof BatchSubscriber;
     }
 
     @Override
     public void cancel() {
-        cancelled = true;
+        cancelled = 1;
         subscriber = null;
     }
 
@@ -48,8 +65,56 @@ public class BaseSubscription<T> implements Subscription {
     public void request(long elements) {
         if (elements <= 0) {
             sendError(new IllegalArgumentException("spec 3.9"));
+            return;
+        }
+        addDemand(elements);
+    }
+
+    /**
+     * Add to the pending demand, capped at <code>Long.MAX_VALUE</code>.
+     * @param elements the number of elements to add.
+     * @return the pending demand before the elements was added.
+     */
+    protected long addDemand(long elements) {
+        for (;;) {
+            long current = pendingDemand;
+            if (current == Long.MAX_VALUE) {
+                return current;
+            }
+            if (PENDING_DEMAND.compareAndSet(this, current, addCap(current, elements))) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Add two non-negative demand values, capped at <code>Long.MAX_VALUE</code>.
+     * @param a the first value.
+     * @param b the second value.
+     * @return the sum or <code>Long.MAX_VALUE</code> if the sum overflow.
+     */
+    public static long addCap(long a, long b) {
+        long r = a + b;
+        return r < 0 ? Long.MAX_VALUE : r;
+    }
+
+    /**
+     * Subtract from the pending demand, unless the demand is unbounded (<code>Long.MAX_VALUE</code>).
+     * @param elements the number of elements that have been emitted.
+     * @return the pending demand after the elements was subtracted.
+     */
+    protected long produced(long elements) {
+        for (;;) {
+            long current = pendingDemand;
+            if (current == Long.MAX_VALUE) {
+                // a request(Long.MAX_VALUE) may arrive while the elements are emitted, it must stay unbounded.
+                return current;
+            }
+            long next = current - elements;
+            if (PENDING_DEMAND.compareAndSet(this, current, next)) {
+                return next;
+            }
         }
-        pendingDemand += elements;
     }
 
     /**
@@ -70,7 +135,7 @@ public class BaseSubscription<T> implements Subscription {
      * @return true if the subscription is cancelled (no longer active). 
      */
     protected boolean isCancelled() {
-        return cancelled;
+        return cancelled != 0;
     }
 
     /**
@@ -82,11 +147,75 @@ public class BaseSubscription<T> implements Subscription {
 
     /**
      * @param value send a value to the out subscriber.
-     * Also decrement the pending demand.
+     * Also decrement the pending demand, unless the demand is unbounded (<code>Long.MAX_VALUE</code>).
      */
     public void sendNext(T value) {
-        subscriber.onNext(value);
-        pendingDemand--;
+        Subscriber<? super T> s = subscriber;
+        if (s == null) {
+            return;
+        }
+        if (pendingDemand == Long.MAX_VALUE) {
+            s.onNext(value);
+            return;
+        }
+        s.onNext(value);
+        produced(1);
+    }
+
+    /**
+     * Send a slice of values to the out subscriber, as a single batch if the subscriber is a 
+     * {@link BatchSubscriber} and otherwise one by one.
+     * Also subtract the number of values from the pending demand, unless the demand is unbounded.
+     * @param values an array with values of type T.
+     * @param offset the index of the first value.
+     * @param length the number of values.
+     */
+    public void sendNextBatch(Object[] values, int offset, int length) {
+        if (length == 0) {
+            return;
+        }
+        emitBatch(values, offset, length);
+        produced(length);
+    }
+
+    /**
+     * Send a slice of values to the out subscriber without changing the pending demand.
+     * @param values an array with values of type T.
+     * @param offset the index of the first value.
+     * @param length the number of values.
+     */
+    @SuppressWarnings("unchecked")
+    protected void emitBatch(Object[] values, int offset, int length) {
+        Subscriber<? super T> s = subscriber;
+        if (s == null) {
+            return;
+        }
+        if (batch) {
+            ((BatchSubscriber<? super T>) s).onNextBatch(values, offset, length);
+            return;
+        }
+        for (int i = offset, end = offset + length; i < end; i++) {
+            s.onNext((T) values[i]);
+        }
+    }
+
+    /**
+     * @return true if the subscriber accept batches.
+     */
+    protected boolean isBatch() {
+        return batch;
+    }
+
+    /**
+     * Send a value to the out subscriber without changing the pending demand. 
+     * The caller is responsible for calling produced() for the emitted elements.
+     * @param value the value.
+     */
+    protected void emit(T value) {
+        Subscriber<? super T> s = subscriber;
+        if (s != null) {
+            s.onNext(value);
+        }
     }
 
     /**
@@ -94,12 +223,10 @@ public class BaseSubscription<T> implements Subscription {
      * Also marks the subscription as cancelled.
      */
     public void sendComplete() {
-        if (cancelled) {
-            return;
+        Subscriber<? super T> s = terminate();
+        if (s != null) {
+            s.onComplete();
         }
-        subscriber.onComplete();
-        subscriber = null;
-        cancelled = true;
     }
 
     /**
@@ -108,15 +235,27 @@ public class BaseSubscription<T> implements Subscription {
      * @param t the error.
      */
     public void sendError(Throwable t) {
-        if (cancelled) {
-            return;
+        Subscriber<? super T> s = terminate();
+        if (s != null) {
+            s.onError(t);
+        }
+    }
+
+    /**
+     * Mark the subscription as cancelled and return the subscriber if this call was the one that did it.
+     * @return the subscriber or null if the subscription was already cancelled.
+     */
+    private Subscriber<? super T> terminate() {
+        Subscriber<? super T> s = subscriber;
+        if (!CANCELLED.compareAndSet(this, 0, 1)) {
+            return null;
         }
-        subscriber.onError(t);
         subscriber = null;
-        cancelled = true;
+        return s;
     }
 
     public String toString() {
-        return "Subscription to " + subscriber.getClass().getSimpleName();
+        Subscriber<? super T> s = subscriber;
+        return "Subscription to " + (s == null ? "<cancelled>" : s.getClass().getSimpleName());
     }
 }
@@ -0,0 +1,37 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams;
+
+import org.reactivestreams.Subscriber;
+
+/**
+ * A subscriber that can receive a slice of an array of elements in a single call.
+ * <p>
+ * Publishers that support batches check if their subscriber implement this interface and then call 
+ * {@link #onNextBatch(Object[], int, int)} instead of calling {@link #onNext(Object)} for each element.
+ * A batch counts against the demand just like the same number of onNext calls, and it is never larger 
+ * than the outstanding demand. Publishers that does not know about batches just call onNext().
+ *
+ * @param <T> type of the elements.
+ */
+public interface BatchSubscriber<T> extends Subscriber<T> {
+    /**
+     * Invoked with a slice of elements. The array is owned by the publisher and must not be modified or 
+     * kept after the call returns.
+     * @param values an array with elements of type T.
+     * @param offset the index of the first element.
+     * @param length the number of elements.
+     */
+    void onNextBatch(Object[] values, int offset, int length);
+}
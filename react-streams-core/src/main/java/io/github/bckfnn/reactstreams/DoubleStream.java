@@ -0,0 +1,238 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams;
+
+import io.github.bckfnn.reactstreams.ops.Primitives;
+
+import org.reactivestreams.Publisher;
+
+/**
+ * A stream of primitive double elements. 
+ * The operations on a DoubleStream pass the elements as primitive values, so a pipeline of map, filter and
+ * accumulate operations does not allocate anything per element. The elements are only boxed at the edges, 
+ * when the stream is converted back to a {@link Stream} with {@link #boxed()} or one of the aggregating 
+ * operations.
+ */
+public interface DoubleStream {
+    /**
+     * Subscribe to the elements.
+     * @param subscriber the subscriber.
+     */
+    void subscribe(DoubleSubscriber subscriber);
+
+    /**
+     * Create and return a new DoubleStream that emit the values in the array.
+     * @param values the values.
+     * @return the new stream.
+     */
+    public static DoubleStream of(double... values) {
+        return new Primitives.DoubleArray(values);
+    }
+
+    /**
+     * Create and return a new DoubleStream that emit the result of calling <code>func</code> on each element
+     * from the <code>publisher</code>.
+     * @param publisher the publisher.
+     * @param func the function that map each element to a double.
+     * @param <T> type of the publisher elements.
+     * @return the new stream.
+     */
+    public static <T> DoubleStream from(Publisher<T> publisher, ToDoubleFunc1<T> func) {
+        return new Primitives.MapToDouble<T>(publisher, func);
+    }
+
+    /**
+     * Add a map operation to the output from this stream.
+     * @param func a function that transform each value.
+     * @return a new DoubleStream.
+     */
+    default public DoubleStream map(DoubleFunc1 func) {
+        return new Primitives.DoubleMap(this, func);
+    }
+
+    /**
+     * Add a filter operation to the output from this stream.
+     * @param func the predicate, only the values where it return true is emitted.
+     * @return a new DoubleStream.
+     */
+    default public DoubleStream filter(DoublePred1 func) {
+        return new Primitives.DoubleFilter(this, func);
+    }
+
+    /**
+     * Add an accumulate operation to the output from this stream.
+     * The accumulate operation call the <code>func</code> on each element with the result of the previous 
+     * call (or the <code>initial</code> value) as the first parameter and emit the result.
+     * @param initial the initial value.
+     * @param func the accumulate function.
+     * @return a new DoubleStream.
+     */
+    default public DoubleStream accumulate(double initial, DoubleFunc2 func) {
+        return new Primitives.DoubleAccumulate(this, initial, func);
+    }
+
+    /**
+     * Convert this stream to a {@code Stream<Double>}.
+     * @return a new {@link Stream}.
+     */
+    default public Stream<Double> boxed() {
+        return new Primitives.DoubleBoxed(this);
+    }
+
+    /**
+     * Request all the elements and emit the result of calling <code>func</code> on each element with the result 
+     * of the previous call (or the <code>initial</code> value) as the first parameter.
+     * @param initial the initial value.
+     * @param func the reduce function.
+     * @return a new {@link Stream} with a single element.
+     */
+    default public Stream<Double> reduce(double initial, DoubleFunc2 func) {
+        return new Primitives.DoubleAggregate<Double>(this, () -> new Primitives.DoubleAggregator<Double>() {
+            double acc = initial;
+
+            @Override
+            public void accept(double value) throws Throwable {
+                acc = func.apply(acc, value);
+            }
+
+            @Override
+            public Double result() {
+                return acc;
+            }
+        });
+    }
+
+    /**
+     * Request all the elements and emit the sum of the elements.
+     * @return a new {@link Stream} with a single element.
+     */
+    default public Stream<Double> sum() {
+        return reduce(0, (a, b) -> a + b);
+    }
+
+    /**
+     * Request all the elements and emit the number of elements.
+     * @return a new {@link Stream} with a single element.
+     */
+    default public Stream<Long> count() {
+        return new Primitives.DoubleAggregate<Long>(this, () -> new Primitives.DoubleAggregator<Long>() {
+            long count = 0;
+
+            @Override
+            public void accept(double value) {
+                count++;
+            }
+
+            @Override
+            public Long result() {
+                return count;
+            }
+        });
+    }
+
+    /**
+     * Request all the elements and emit the average of the elements. Nothing is emitted if the stream is empty.
+     * @return a new {@link Stream} with zero or one element.
+     */
+    default public Stream<Double> average() {
+        return new Primitives.DoubleAggregate<Double>(this, () -> new Primitives.DoubleAggregator<Double>() {
+            double sum = 0;
+            long count = 0;
+
+            @Override
+            public void accept(double value) {
+                sum += value;
+                count++;
+            }
+
+            @Override
+            public Double result() {
+                return count == 0 ? null : sum / count;
+            }
+        });
+    }
+
+    /**
+     * Request all the elements and emit the smallest element. Nothing is emitted if the stream is empty.
+     * @return a new {@link Stream} with zero or one element.
+     */
+    default public Stream<Double> min() {
+        return new Primitives.DoubleAggregate<Double>(this, () -> new Primitives.DoubleAggregator<Double>() {
+            double min = Double.POSITIVE_INFINITY;
+            boolean any = false;
+
+            @Override
+            public void accept(double value) {
+                any = true;
+                if (value < min) {
+                    min = value;
+                }
+            }
+
+            @Override
+            public Double result() {
+                return any ? min : null;
+            }
+        });
+    }
+
+    /**
+     * Request all the elements and emit the largest element. Nothing is emitted if the stream is empty.
+     * @return a new {@link Stream} with zero or one element.
+     */
+    default public Stream<Double> max() {
+        return new Primitives.DoubleAggregate<Double>(this, () -> new Primitives.DoubleAggregator<Double>() {
+            double max = Double.NEGATIVE_INFINITY;
+            boolean any = false;
+
+            @Override
+            public void accept(double value) {
+                any = true;
+                if (value > max) {
+                    max = value;
+                }
+            }
+
+            @Override
+            public Double result() {
+                return any ? max : null;
+            }
+        });
+    }
+
+    /**
+     * Request all the elements and emit a histogram of the elements. 
+     * The histogram have <code>bounds.length + 1</code> buckets, bucket <code>i</code> count the elements 
+     * where <code>bounds[i - 1] &lt;= value &lt; bounds[i]</code>. The first bucket count the elements 
+     * below <code>bounds[0]</code> and the last bucket the elements from the last bound and up.
+     * @param bounds the sorted bucket bounds.
+     * @return a new {@link Stream} with a single element.
+     */
+    default public Stream<long[]> histogram(double... bounds) {
+        return new Primitives.DoubleAggregate<long[]>(this, () -> new Primitives.DoubleAggregator<long[]>() {
+            long[] counts = new long[bounds.length + 1];
+
+            @Override
+            public void accept(double value) {
+                int idx = java.util.Arrays.binarySearch(bounds, value);
+                counts[idx < 0 ? -idx - 1 : idx + 1]++;
+            }
+
+            @Override
+            public long[] result() {
+                return counts;
+            }
+        });
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams;
+
+/**
+ * The emitter that is passed to the generator function of {@link Stream#generateBlocking(Proc1)}.
+ *
+ * @param <T> type of the elements.
+ */
+public interface Emitter<T> {
+    /**
+     * Emit a value to the subscriber. Block the calling thread until the subscriber have requested an element.
+     * @param value the value.
+     * @exception InterruptedException when the thread is interrupted while waiting for demand.
+     * @exception java.util.concurrent.CancellationException when the subscription is cancelled.
+     */
+    void emit(T value) throws InterruptedException;
+
+    /**
+     * @return true if the subscription is cancelled, the generator should stop emitting.
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link Scheduler} that keep the tasks in a hashed wheel of buckets.
+ * <p>
+ * A single worker thread advance the wheel one bucket every tick and run the tasks in the bucket that
+ * have expired. Scheduling a task only add it to a lock-free queue, which the worker move to the right bucket
+ * on the next tick, and cancelling a task only mark it as cancelled, the worker remove it when it visit the bucket.
+ * Both are constant time, so the timer can handle a very large number of timeouts where most are cancelled
+ * before they expire. The precision is one tick.
+ * <p>
+ * The tasks are run on the worker thread and must be short, the time based operations only use them to emit
+ * elements. The worker is a daemon thread that is started when the first task is scheduled, and it run until
+ * the timer is stopped with {@link #stop()}.
+ */
+public class HashedWheelTimer implements Scheduler {
+    private static final int MAX_TRANSFER = 100000;
+
+    private final long tickNanos;
+    private final Timeout[] heads;
+    private final Timeout[] tails;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final String name;
+    private volatile boolean stopped = false;
+    private volatile Thread worker;
+    private final long startTime = System.nanoTime();
+
+    /**
+     * Constructor.
+     * @param name the name of the worker thread.
+     * @param tickDuration the duration of a tick.
+     * @param unit the unit of the tick duration.
+     * @param ticksPerWheel the number of buckets, rounded up to a power of two.
+     */
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        int n = 1;
+        while (n < ticksPerWheel) {
+            n <<= 1;
+        }
+        this.name = name;
+        this.tickNanos = Math.max(1, unit.toNanos(tickDuration));
+        this.heads = new Timeout[n];
+        this.tails = new Timeout[n];
+        this.mask = n - 1;
+    }
+
+    /**
+     * @return the shared timer with a tick of 1 millisecond and 512 buckets.
+     */
+    public static HashedWheelTimer shared() {
+        return Shared.INSTANCE;
+    }
+
+    private static class Shared {
+        static final HashedWheelTimer INSTANCE = new HashedWheelTimer("react-streams-timer", 1, TimeUnit.MILLISECONDS, 512);
+    }
+
+    @Override
+    public Task schedule(Runnable task, long delay, TimeUnit unit) {
+        if (started.compareAndSet(false, true)) {
+            Thread t = new Thread(this::run, name);
+            t.setDaemon(true);
+            worker = t;
+            t.start();
+        }
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay)));
+        pending.offer(timeout);
+        if (stopped) {
+            // the worker may already have cancelled the pending tasks.
+            timeout.cancel();
+        }
+        return timeout;
+    }
+
+    /**
+     * Stop the worker thread and cancel the tasks that have not run. A task that is scheduled after the timer is
+     * stopped is cancelled at once. Wait for the worker to end, unless it is called from a task.
+     * The shared timer can not be stopped.
+     */
+    public void stop() {
+        if (this == Shared.INSTANCE) {
+            throw new IllegalStateException("the shared timer can not be stopped");
+        }
+        stopped = true;
+        if (started.compareAndSet(false, true)) {
+            cancelAll();
+            return;
+        }
+        Thread w = worker;
+        if (w == null || w == Thread.currentThread()) {
+            return;
+        }
+        LockSupport.unpark(w);
+        try {
+            w.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long tick = (System.nanoTime() - startTime) / tickNanos;
+        while (!stopped) {
+            long deadline = (tick + 1) * tickNanos;
+            long sleep;
+            while ((sleep = deadline - (System.nanoTime() - startTime)) > 0 && !stopped) {
+                LockSupport.parkNanos(this, sleep);
+            }
+            if (stopped) {
+                break;
+            }
+            transfer(tick);
+            expire(tick);
+            tick++;
+        }
+        cancelAll();
+    }
+
+    /**
+     * Cancel the tasks in the buckets and the newly scheduled tasks, when the timer is stopped.
+     */
+    private void cancelAll() {
+        for (int i = 0; i < heads.length; i++) {
+            for (Timeout timeout = heads[i]; timeout != null; timeout = timeout.next) {
+                timeout.cancel();
+            }
+            heads[i] = null;
+            tails[i] = null;
+        }
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Move the newly scheduled tasks to their buckets.
+     */
+    private void transfer(long tick) {
+        for (int i = 0; i < MAX_TRANSFER; i++) {
+            Timeout timeout = pending.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state != Timeout.WAITING) {
+                continue;
+            }
+            long expiry = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.rounds = (expiry - tick) / heads.length;
+            int idx = (int) (expiry & mask);
+            if (tails[idx] == null) {
+                heads[idx] = timeout;
+            } else {
+                tails[idx].next = timeout;
+                timeout.prev = tails[idx];
+            }
+            tails[idx] = timeout;
+        }
+    }
+
+    /**
+     * Run the expired tasks in the bucket for the tick, and remove the cancelled ones.
+     */
+    private void expire(long tick) {
+        int idx = (int) (tick & mask);
+        Timeout timeout = heads[idx];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.state != Timeout.WAITING) {
+                remove(idx, timeout);
+            } else if (timeout.rounds <= 0) {
+                remove(idx, timeout);
+                timeout.expire();
+            } else {
+                timeout.rounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    private void remove(int idx, Timeout timeout) {
+        if (timeout.prev == null) {
+            heads[idx] = timeout.next;
+        } else {
+            timeout.prev.next = timeout.next;
+        }
+        if (timeout.next == null) {
+            tails[idx] = timeout.prev;
+        } else {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+    }
+
+    /**
+     * A scheduled task. The links and the rounds are only used by the worker thread.
+     */
+    private static final class Timeout implements Task {
+        static final int WAITING = 0;
+        static final int CANCELLED = 1;
+        static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        final Runnable task;
+        final long deadline;
+        volatile int state = WAITING;
+        long rounds;
+        Timeout next;
+        Timeout prev;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            return STATE.compareAndSet(this, WAITING, CANCELLED);
+        }
+
+        void expire() {
+            if (STATE.compareAndSet(this, WAITING, EXPIRED)) {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    // a failing task must not stop the timer.
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams;
+
+import io.github.bckfnn.reactstreams.ops.Primitives;
+
+import org.reactivestreams.Publisher;
+
+/**
+ * A stream of primitive long elements. 
+ * The operations on a LongStream pass the elements as primitive values, so a pipeline of map, filter and
+ * accumulate operations does not allocate anything per element. The elements are only boxed at the edges, 
+ * when the stream is converted back to a {@link Stream} with {@link #boxed()} or one of the aggregating 
+ * operations.
+ */
+public interface LongStream {
+    /**
+     * Subscribe to the elements.
+     * @param subscriber the subscriber.
+     */
+    void subscribe(LongSubscriber subscriber);
+
+    /**
+     * Create and return a new LongStream that emit the values from <code>start</code> (inclusive) to 
+     * <code>end</code> (exclusive).
+     * @param start the first value.
+     * @param end the end value.
+     * @return the new stream.
+     */
+    public static LongStream range(long start, long end) {
+        return new Primitives.LongRange(start, end);
+    }
+
+    /**
+     * Create and return a new LongStream that emit all values from the specified <code>start</code> value.
+     * @param start the start value.
+     * @return the new stream.
+     */
+    public static LongStream counter(long start) {
+        return new Primitives.LongRange(start, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create and return a new LongStream that emit the values in the array.
+     * @param values the values.
+     * @return the new stream.
+     */
+    public static LongStream of(long... values) {
+        return new Primitives.LongArray(values);
+    }
+
+    /**
+     * Create and return a new LongStream that emit the result of calling <code>func</code> on each element
+     * from the <code>publisher</code>.
+     * @param publisher the publisher.
+     * @param func the function that map each element to a long.
+     * @param <T> type of the publisher elements.
+     * @return the new stream.
+     */
+    public static <T> LongStream from(Publisher<T> publisher, ToLongFunc1<T> func) {
+        return new Primitives.MapToLong<T>(publisher, func);
+    }
+
+    /**
+     * Add a map operation to the output from this stream.
+     * @param func a function that transform each value.
+     * @return a new LongStream.
+     */
+    default public LongStream map(LongFunc1 func) {
+        return new Primitives.LongMap(this, func);
+    }
+
+    /**
+     * Add a filter operation to the output from this stream.
+     * @param func the predicate, only the values where it return true is emitted.
+     * @return a new LongStream.
+     */
+    default public LongStream filter(LongPred1 func) {
+        return new Primitives.LongFilter(this, func);
+    }
+
+    /**
+     * Add an accumulate operation to the output from this stream.
+     * The accumulate operation call the <code>func</code> on each element with the result of the previous 
+     * call (or the <code>initial</code> value) as the first parameter and emit the result.
+     * @param initial the initial value.
+     * @param func the accumulate function.
+     * @return a new LongStream.
+     */
+    default public LongStream accumulate(long initial, LongFunc2 func) {
+        return new Primitives.LongAccumulate(this, initial, func);
+    }
+
+    /**
+     * Convert the elements to double.
+     * @return a new DoubleStream.
+     */
+    default public DoubleStream asDoubleStream() {
+        return new Primitives.LongToDouble(this);
+    }
+
+    /**
+     * Convert this stream to a {@code Stream<Long>}.
+     * @return a new {@link Stream}.
+     */
+    default public Stream<Long> boxed() {
+        return new Primitives.LongBoxed(this);
+    }
+
+    /**
+     * Request all the elements and emit the result of calling <code>func</code> on each element with the result 
+     * of the previous call (or the <code>initial</code> value) as the first parameter.
+     * @param initial the initial value.
+     * @param func the reduce function.
+     * @return a new {@link Stream} with a single element.
+     */
+    default public Stream<Long> reduce(long initial, LongFunc2 func) {
+        return new Primitives.LongAggregate<Long>(this, () -> new Primitives.LongAggregator<Long>() {
+            long acc = initial;
+
+            @Override
+            public void accept(long value) throws Throwable {
+                acc = func.apply(acc, value);
+            }
+
+            @Override
+            public Long result() {
+                return acc;
+            }
+        });
+    }
+
+    /**
+     * Request all the elements and emit the sum of the elements.
+     * @return a new {@link Stream} with a single element.
+     */
+    default public Stream<Long> sum() {
+        return reduce(0, (a, b) -> a + b);
+    }
+
+    /**
+     * Request all the elements and emit the number of elements.
+     * @return a new {@link Stream} with a single element.
+     */
+    default public Stream<Long> count() {
+        return reduce(0, (a, b) -> a + 1);
+    }
+
+    /**
+     * Request all the elements and emit the smallest element. Nothing is emitted if the stream is empty.
+     * @return a new {@link Stream} with zero or one element.
+     */
+    default public Stream<Long> min() {
+        return new Primitives.LongAggregate<Long>(this, () -> new Primitives.LongAggregator<Long>() {
+            long min = Long.MAX_VALUE;
+            boolean any = false;
+
+            @Override
+            public void accept(long value) {
+                any = true;
+                if (value < min) {
+                    min = value;
+                }
+            }
+
+            @Override
+            public Long result() {
+                return any ? min : null;
+            }
+        });
+    }
+
+    /**
+     * Request all the elements and emit the largest element. Nothing is emitted if the stream is empty.
+     * @return a new {@link Stream} with zero or one element.
+     */
+    default public Stream<Long> max() {
+        return new Primitives.LongAggregate<Long>(this, () -> new Primitives.LongAggregator<Long>() {
+            long max = Long.MIN_VALUE;
+            boolean any = false;
+
+            @Override
+            public void accept(long value) {
+                any = true;
+                if (value > max) {
+                    max = value;
+                }
+            }
+
+            @Override
+            public Long result() {
+                return any ? max : null;
+            }
+        });
+    }
+
+    /**
+     * Request all the elements and emit a histogram of the elements. 
+     * The histogram have <code>bounds.length + 1</code> buckets, bucket <code>i</code> count the elements 
+     * where <code>bounds[i - 1] &lt;= value &lt; bounds[i]</code>. The first bucket count the elements 
+     * below <code>bounds[0]</code> and the last bucket the elements from the last bound and up.
+     * @param bounds the sorted bucket bounds.
+     * @return a new {@link Stream} with a single element.
+     */
+    default public Stream<long[]> histogram(long... bounds) {
+        return new Primitives.LongAggregate<long[]>(this, () -> new Primitives.LongAggregator<long[]>() {
+            long[] counts = new long[bounds.length + 1];
+
+            @Override
+            public void accept(long value) {
+                int idx = java.util.Arrays.binarySearch(bounds, value);
+                counts[idx < 0 ? -idx - 1 : idx + 1]++;
+            }
+
+            @Override
+            public long[] result() {
+                return counts;
+            }
+        });
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams;
+
+import org.reactivestreams.Subscription;
+
+/**
+ * A subscriber that receive primitive long elements from a {@link LongStream}. 
+ * The rules for the signals are the same as for {@link org.reactivestreams.Subscriber}.
+ */
+public interface LongSubscriber {
+    /**
+     * Invoked once when the subscriber is subscribed.
+     * @param s the subscription used to request elements.
+     */
+    void onSubscribe(Subscription s);
+
+    /**
+     * Invoked for each element.
+     * @param value the element.
+     */
+    void onNext(long value);
+
+    /**
+     * Invoked when the stream ends with an error.
+     * @param t the error.
+     */
+    void onError(Throwable t);
+
+    /**
+     * Invoked when the stream is complete.
+     */
+    void onComplete();
+}
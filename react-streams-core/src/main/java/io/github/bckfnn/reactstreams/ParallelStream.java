@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A stream that is split into a number of rails that process their elements in parallel. 
+ * <p>
+ * The operations on a ParallelStream run on each rail on its own, on a thread from the executor given to 
+ * {@link Stream#parallel(int, java.util.concurrent.Executor)}. The rails are joined into a single 
+ * {@link Stream} again with {@link #sequential()}, {@link #ordered()} or one of the reduce operations.
+ *
+ * @param <T> type of the elements.
+ */
+public interface ParallelStream<T> {
+    /**
+     * @return the number of rails.
+     */
+    int rails();
+
+    /**
+     * Add a map operation to each rail.
+     * @param func a function that transform each value.
+     * @param <R> type of the output from the transform.
+     * @return a new ParallelStream.
+     */
+    <R> ParallelStream<R> map(Func1<T, R> func);
+
+    /**
+     * Add a filter operation to each rail.
+     * @param func the predicate, only the values where it return true is kept.
+     * @return a new ParallelStream.
+     */
+    ParallelStream<T> filter(Func1<T, Boolean> func);
+
+    /**
+     * Add an onEach operation to each rail.
+     * @param func the function that is called for each value.
+     * @return a new ParallelStream.
+     */
+    ParallelStream<T> onEach(Proc1<T> func);
+
+    /**
+     * Add an accumulate operation to each rail. Each rail accumulate the values that it process, starting 
+     * from the <code>initial</code> value, and emit the result after each value.
+     * @param initial the initial value for each rail.
+     * @param func the accumulate function.
+     * @return a new ParallelStream.
+     */
+    ParallelStream<T> accumulate(T initial, Func2<T, T, T> func);
+
+    /**
+     * Join the rails into a single stream, where the values are emitted as soon as they are ready.
+     * @return a new {@link Stream}.
+     */
+    Stream<T> sequential();
+
+    /**
+     * Join the rails into a single stream, where the values are emitted in the same order as they arrived 
+     * before the split. Only possible when the elements are distributed round-robin.
+     * @return a new {@link Stream}.
+     */
+    Stream<T> ordered();
+
+    /**
+     * Reduce the values on each rail into a partial result, and combine the partial results into a single 
+     * value when all the rails are complete.
+     * @param initial creates the initial partial result for each rail.
+     * @param accumulator add a value to a partial result.
+     * @param combiner combine two partial results.
+     * @param <R> type of the result.
+     * @return a new {@link Stream} with a single element.
+     */
+    <R> Stream<R> reduce(Func0<R> initial, Func2<R, T, R> accumulator, Func2<R, R, R> combiner);
+
+    /**
+     * Collect the values into a list for each rail, and concatenate the lists when all rails are complete. 
+     * The list is ordered by rail, use <code>ordered().toList()</code> to keep the original order.
+     * @return a new {@link Stream} with a single element.
+     */
+    default Stream<List<T>> toList() {
+        return reduce(ArrayList::new, (list, value) -> {
+            list.add(value);
+            return list;
+        }, (a, b) -> {
+            a.addAll(b);
+            return a;
+        });
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams;
+
+/**
+ * A publisher that is known to emit at most one element, and where the element is available at once. 
+ * Operations that subscribe to inner publishers check for this interface and read the element directly
+ * instead of subscribing.
+ *
+ * @param <T> type of the element.
+ */
+public interface Scalar<T> {
+    /**
+     * Return the element that the publisher would emit.
+     * @return the element, or null if the publisher complete without emitting an element.
+     * @exception Throwable the error that the publisher would emit.
+     */
+    T get() throws Throwable;
+}
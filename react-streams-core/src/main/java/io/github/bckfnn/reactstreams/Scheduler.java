@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A scheduler run tasks after a delay. It is used by the time based operations.
+ */
+public interface Scheduler {
+    /**
+     * A scheduled task that can be cancelled.
+     */
+    public interface Task {
+        /**
+         * Cancel the task.
+         * @return true if the task was cancelled before it was run.
+         */
+        boolean cancel();
+    }
+
+    /**
+     * Schedule a task to run once after the <code>delay</code>.
+     * Tasks with the same expiry time are run in the order they were scheduled.
+     * @param task the task.
+     * @param delay the delay.
+     * @param unit the unit of the delay.
+     * @return the scheduled task.
+     */
+    Task schedule(Runnable task, long delay, TimeUnit unit);
+
+    /**
+     * @param unit the unit of the time.
+     * @return the current time of the scheduler, only meaningful when compared with other values from now().
+     */
+    default long now(TimeUnit unit) {
+        return unit.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the shared {@link HashedWheelTimer} with a tick duration of 1 millisecond.
+     */
+    static Scheduler timer() {
+        return HashedWheelTimer.shared();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded single-producer / single-consumer queue backed by an array.
+ * One thread at a time may call offer() and one (other) thread at a time may call poll(), peek(),
+ * isEmpty() and clear(). A slot is free when it contains null, so null values are not allowed.
+ *
+ * @param <T> type of the elements.
+ */
+public class SpscArrayQueue<T> {
+    /**
+     * The largest capacity of a queue.
+     */
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    private final AtomicReferenceArray<T> buffer;
+    private final int mask;
+    private long producerIndex;
+    private long consumerIndex;
+
+    /**
+     * Check that a capacity or prefetch is between 1 and {@link #MAX_CAPACITY}.
+     * @param capacity the value to check.
+     * @param name the name of the value, used in the error message.
+     * @return the capacity.
+     * @exception IllegalArgumentException when the capacity is out of range.
+     */
+    public static int checkCapacity(int capacity, String name) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException(name + " must be between 1 and " + MAX_CAPACITY + ": " + capacity);
+        }
+        return capacity;
+    }
+
+    /**
+     * Constructor.
+     * @param capacity the minimum capacity, rounded up to a power of two.
+     * @exception IllegalArgumentException when the capacity is not between 1 and {@link #MAX_CAPACITY}.
+     */
+    public SpscArrayQueue(int capacity) {
+        checkCapacity(capacity, "capacity");
+        int c = 1;
+        while (c < capacity) {
+            c <<= 1;
+        }
+        this.buffer = new AtomicReferenceArray<T>(c);
+        this.mask = c - 1;
+    }
+
+    /**
+     * Add a value to the queue. Must only be called by the producer.
+     * @param value the value.
+     * @return false if the queue is full.
+     */
+    public boolean offer(T value) {
+        if (value == null) {
+            throw new NullPointerException("spec 2.13");
+        }
+        int offset = (int) producerIndex & mask;
+        if (buffer.get(offset) != null) {
+            return false;
+        }
+        buffer.lazySet(offset, value);
+        producerIndex++;
+        return true;
+    }
+
+    /**
+     * Remove and return the head of the queue. Must only be called by the consumer.
+     * @return the head value or null if the queue is empty.
+     */
+    public T poll() {
+        int offset = (int) consumerIndex & mask;
+        T value = buffer.get(offset);
+        if (value == null) {
+            return null;
+        }
+        buffer.lazySet(offset, null);
+        consumerIndex++;
+        return value;
+    }
+
+    /**
+     * Return the head of the queue without removing it. Must only be called by the consumer.
+     * @return the head value or null if the queue is empty.
+     */
+    public T peek() {
+        return buffer.get((int) consumerIndex & mask);
+    }
+
+    /**
+     * @return true if the queue is empty. Must only be called by the consumer.
+     */
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    /**
+     * Remove all elements. Must only be called by the consumer.
+     */
+    public void clear() {
+        while (poll() != null) {
+            // drop.
+        }
+    }
+
+    /**
+     * @return the capacity of the queue.
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
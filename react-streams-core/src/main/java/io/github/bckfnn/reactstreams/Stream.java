@@ -13,14 +13,25 @@
  */
 package io.github.bckfnn.reactstreams;
 
+import io.github.bckfnn.reactstreams.ops.Async;
+import io.github.bckfnn.reactstreams.ops.Blocking;
 import io.github.bckfnn.reactstreams.ops.Filters;
 import io.github.bckfnn.reactstreams.ops.Flows;
+import io.github.bckfnn.reactstreams.ops.Multicast;
+import io.github.bckfnn.reactstreams.ops.Parallel;
 import io.github.bckfnn.reactstreams.ops.Streams;
+import io.github.bckfnn.reactstreams.ops.Time;
 import io.github.bckfnn.reactstreams.ops.Transforms;
 
 import java.io.PrintStream;
 import java.util.Collection;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
 
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
@@ -124,7 +135,56 @@ public interface Stream<T> extends Publisher<T> {
      * @return the new stream.
      */
     public static <T> Stream<T> from(Collection<T> collection) {
-        return new Streams.Iter<T>(collection.iterator());
+        return new Streams.Iter<T>(collection);
+    }
+
+    /**
+     * Create and return a new {@code Stream<T>} that emit the elements from a <code>Spliterator</code>. 
+     * The elements are only taken from the spliterator when they are requested, and the stream 
+     * can only be subscribed to once.
+     * @param spliterator the spliterator.
+     * @param <T> type of the stream.
+     * @return the new stream.
+     */
+    public static <T> Stream<T> fromSpliterator(Spliterator<T> spliterator) {
+        return new Streams.Split<T>(spliterator);
+    }
+
+    /**
+     * Create and return a new {@code Stream<T>} that split the <code>spliterator</code> into up to 
+     * <code>parallelism</code> parts with <code>trySplit()</code>, and read the parts at the same time on 
+     * the <code>executor</code>. The elements are emitted in the encounter order of the spliterator.
+     * @param spliterator the spliterator.
+     * @param parallelism the maximum number of parts.
+     * @param executor the executor that read the parts.
+     * @param <T> type of the stream.
+     * @return the new stream.
+     */
+    public static <T> Stream<T> fromSpliterator(Spliterator<T> spliterator, int parallelism, Executor executor) {
+        List<Spliterator<T>> parts = Streams.Split.split(spliterator, parallelism);
+        if (parts.size() == 1) {
+            return new Streams.Split<T>(spliterator);
+        }
+        return from(parts).concatMapEager(part -> new Streams.Split<T>(part).subscribeOn(executor), parts.size());
+    }
+
+    /**
+     * Create and return a new {@code Stream<T>} that emit the elements from a <code>java.util.stream.Stream</code>. 
+     * A parallel java stream is split and read in parallel on the common {@link ForkJoinPool}. 
+     * The java stream is closed when the stream complete or fail.
+     * @param stream the java stream.
+     * @param <T> type of the stream.
+     * @return the new stream.
+     */
+    public static <T> Stream<T> fromJavaStream(java.util.stream.Stream<T> stream) {
+        Spliterator<T> spliterator = stream.spliterator();
+        Stream<T> s;
+        if (stream.isParallel()) {
+            s = fromSpliterator(spliterator, ForkJoinPool.getCommonPoolParallelism(), ForkJoinPool.commonPool());
+        } else {
+            s = fromSpliterator(spliterator);
+        }
+        return s.onFinally(stream::close);
     }
 
     /**
@@ -157,6 +217,65 @@ public interface Stream<T> extends Publisher<T> {
         return new Transforms.Concat<T>(list);
     }
 
+    /**
+     * Create and return a new {@code Stream<T>} that concatenate all the values from the <code>Publishers</code>
+     * in an Iterable. The Iterable is walked lazily, so it can be unbounded.
+     * @param sources the publishers.
+     * @param <T> type of the stream.
+     * @return the new stream.
+     */
+    public static <T> Stream<T> concat(Iterable<? extends Publisher<T>> sources) {
+        return new Transforms.Concat<T>(sources);
+    }
+
+    /**
+     * Create and return a new {@code Stream<T>} where the values are emitted by a blocking generator function.
+     * The generator run on a virtual thread when the runtime support it, and {@link Emitter#emit(Object)} 
+     * block the generator until the subscriber have requested more elements. The stream complete when 
+     * the generator return.
+     * @param generator the generator function.
+     * @param <T> type of the stream.
+     * @return the new stream.
+     */
+    public static <T> Stream<T> generateBlocking(Proc1<Emitter<T>> generator) {
+        return new Blocking.Generate<T>(generator, Blocking.executor());
+    }
+
+    /**
+     * Create and return a new {@code Stream<Long>} that emit an increasing sequence number every <code>period</code>, 
+     * starting one period after the subscription. A tick where the subscriber have no demand is dropped.
+     * @param period the time between the ticks.
+     * @param unit the unit of the period.
+     * @param scheduler the scheduler.
+     * @return the new stream.
+     */
+    public static Stream<Long> interval(long period, TimeUnit unit, Scheduler scheduler) {
+        return new Time.Interval(period, unit, scheduler);
+    }
+
+    /**
+     * Create and return a new {@code Stream<Long>} that emit an increasing sequence number every <code>period</code>
+     * from the shared {@link HashedWheelTimer}.
+     * @param period the time between the ticks.
+     * @param unit the unit of the period.
+     * @return the new stream.
+     */
+    public static Stream<Long> interval(long period, TimeUnit unit) {
+        return interval(period, unit, Scheduler.timer());
+    }
+
+    /**
+     * Create and return a new re-subscribable {@code Stream<T>} where the <code>factory</code> is called 
+     * for each subscriber to create the publisher that the subscriber is subscribed to. 
+     * Operations that are added to the stream are also applied again for each subscriber.
+     * @param factory the factory that create a publisher.
+     * @param <T> type of the stream.
+     * @return the new stream.
+     */
+    public static <T> Stream<T> defer(Func0<? extends Publisher<T>> factory) {
+        return new Flows.Assembly<T>(factory);
+    }
+
     /**
      * Create and return a new {@code Stream<T>} that emit all integers from 0.
      * @return the new stream.
@@ -187,6 +306,35 @@ public interface Stream<T> extends Publisher<T> {
         return new Transforms.Zip<T1, T2>(p1, p2);
     }
 
+    /**
+     * Create and return a new {@code Stream<R>} that zip two <code>Publishers</code> together by
+     * emitting the result of calling <code>combiner</code> with a value from each publisher.
+     * @param p1 the first publisher.
+     * @param p2 the second publisher.
+     * @param combiner the function that combine the values.
+     * @param <T1> type of the first publisher.
+     * @param <T2> type of the second publisher.
+     * @param <R> type of the combined values.
+     * @return the new stream.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T1, T2, R> Stream<R> zip(Publisher<T1> p1, Publisher<T2> p2, Func2<T1, T2, R> combiner) {
+        return new Transforms.ZipAll<R>(new Publisher<?>[] { p1, p2 }, 
+                values -> combiner.apply((T1) values[0], (T2) values[1]), Transforms.ZipAll.DEFAULT_PREFETCH);
+    }
+
+    /**
+     * Create and return a new {@code Stream<R>} that zip any number of <code>Publishers</code> together by
+     * emitting the result of calling <code>combiner</code> with an array of a value from each publisher.
+     * @param combiner the function that combine the values.
+     * @param sources the publishers.
+     * @param <R> type of the combined values.
+     * @return the new stream.
+     */
+    public static <R> Stream<R> zip(Func1<Object[], R> combiner, Publisher<?>... sources) {
+        return new Transforms.ZipAll<R>(sources, combiner, Transforms.ZipAll.DEFAULT_PREFETCH);
+    }
+
     /**
      * Creates a new Pipe around the Stream returned from the function.
      * A pipe keep track of the head of the sequence.
@@ -228,10 +376,59 @@ public interface Stream<T> extends Publisher<T> {
      */
 
     default public <X , S extends BaseProcessor<? super T, X>> Stream<X> chain(final S processor) {
-        this.subscribe(processor);
+        processor.setInputCharacteristics(characteristics(), estimateSize());
+        processor.subscribeTo(this);
         return (Stream<X>) processor;
     }
 
+    /**
+     * Add an operation to this stream. All the operations that add a processor to the stream are 
+     * implemented with compose(). The default implementation apply the <code>operation</code> to this 
+     * stream at once, an assembly (see {@link #assemble()}) record it and apply it to a new chain for 
+     * each subscriber.
+     * @param operation a function that add the operation to a stream.
+     * @param <R> type of the new stream that is returned.
+     * @return a new {@link Stream}.
+     */
+    default public <R> Stream<R> compose(Func1<Stream<T>, Stream<R>> operation) {
+        try {
+            return operation.apply(this);
+        } catch (Throwable e) {
+            return new Streams.Error<R>(e);
+        }
+    }
+
+    /**
+     * Return the characteristics of the elements in this stream, a combination of the 
+     * {@link java.util.Spliterator} flags {@link java.util.Spliterator#SIZED SIZED}, 
+     * {@link java.util.Spliterator#ORDERED ORDERED} and {@link java.util.Spliterator#DISTINCT DISTINCT}.
+     * The characteristics of a source are passed on through the operations that does not change them.
+     * @return the characteristics, 0 when nothing is known.
+     */
+    default public int characteristics() {
+        return 0;
+    }
+
+    /**
+     * Return the number of elements in this stream, exact when the stream is 
+     * {@link java.util.Spliterator#SIZED SIZED} and otherwise an upper bound.
+     * @return the number of elements, or <code>Long.MAX_VALUE</code> when it is unknown.
+     */
+    default public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Create a re-subscribable assembly from this stream, which must be a source that can be subscribed 
+     * to more than once, like {@link #from(Object...)} and {@link #from(Collection)}. The operations that 
+     * are added to the assembly are recorded, and each subscribe() create new processors, so the assembly 
+     * can be built once and subscribed to many times and from many threads.
+     * @return a new {@link Stream}.
+     */
+    default public Stream<T> assemble() {
+        return new Flows.Assembly<T>(() -> this);
+    }
+
     /*
      * map operations.
      */
@@ -243,7 +440,71 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@code Stream<O>}.
      */
     default public <O> Stream<O> map(final Func1<T, O> mapFunc) {
-        return chain(new Transforms.Map<T, O>(mapFunc));
+        return compose(s -> s.chain(new Transforms.Map<T, O>(mapFunc)));
+    }
+
+    /**
+     * Add a mapParallel operation to the output from this publisher. The function is called for up to 
+     * <code>parallelism</code> values at the same time on the <code>executor</code>, and the results 
+     * are emitted in the same order as the input values.
+     * @param mapFunc a function that transform each value.
+     * @param parallelism the maximum number of concurrent calls to the function.
+     * @param executor the executor that call the function.
+     * @param <O> type of the output from the transform.
+     * @return a new {@code Stream<O>}.
+     */
+    default public <O> Stream<O> mapParallel(final Func1<T, O> mapFunc, int parallelism, Executor executor) {
+        return compose(s -> s.chain(new Transforms.MapParallel<T, O>(mapFunc, parallelism, executor)));
+    }
+
+    /**
+     * Add a mapParallel operation to the output from this publisher, that call the function on 
+     * the common {@link ForkJoinPool}.
+     * @param mapFunc a function that transform each value.
+     * @param parallelism the maximum number of concurrent calls to the function.
+     * @param <O> type of the output from the transform.
+     * @return a new {@code Stream<O>}.
+     */
+    default public <O> Stream<O> mapParallel(final Func1<T, O> mapFunc, int parallelism) {
+        return mapParallel(mapFunc, parallelism, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Add a mapAsync operation to the output from this publisher. The function start an asynchronous call
+     * for each value, and up to <code>maxInFlight</code> calls are outstanding at the same time.
+     * @param mapFunc a function that transform each value to a {@link CompletionStage}.
+     * @param maxInFlight the maximum number of outstanding calls.
+     * @param ordered true to emit the results in the same order as the values, false to emit them as they complete.
+     * @param <O> type of the output from the transform.
+     * @return a new {@code Stream<O>}.
+     */
+    default public <O> Stream<O> mapAsync(final Func1<T, ? extends CompletionStage<O>> mapFunc, int maxInFlight, boolean ordered) {
+        return compose(s -> s.chain(new Transforms.MapAsync<T, O>(mapFunc, maxInFlight, ordered)));
+    }
+
+    /**
+     * Add a mapAsync operation to the output from this publisher that emit the results in the same order 
+     * as the values.
+     * @param mapFunc a function that transform each value to a {@link CompletionStage}.
+     * @param maxInFlight the maximum number of outstanding calls.
+     * @param <O> type of the output from the transform.
+     * @return a new {@code Stream<O>}.
+     */
+    default public <O> Stream<O> mapAsync(final Func1<T, ? extends CompletionStage<O>> mapFunc, int maxInFlight) {
+        return mapAsync(mapFunc, maxInFlight, true);
+    }
+
+    /**
+     * Add a mapBlocking operation to the output from this publisher. The function may block, it is called 
+     * for up to <code>maxConcurrency</code> values at the same time on virtual threads when the runtime 
+     * support it. The results are emitted in the same order as the values.
+     * @param mapFunc a function that transform each value.
+     * @param maxConcurrency the maximum number of concurrent calls to the function.
+     * @param <O> type of the output from the transform.
+     * @return a new {@code Stream<O>}.
+     */
+    default public <O> Stream<O> mapBlocking(final Func1<T, O> mapFunc, int maxConcurrency) {
+        return mapParallel(mapFunc, maxConcurrency, Blocking.executor());
     }
 
     /**
@@ -253,7 +514,25 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@code Stream<O>}.
      */
     default public <O> Stream<O> mapMany(final Func1<T, Stream<O>> mapFunc) {
-        return chain(new Transforms.MapMany<T, O>(mapFunc));
+        return compose(s -> s.chain(new Transforms.MapMany<T, O>(mapFunc)));
+    }
+
+    /**
+     * Map each element from this publisher to a primitive long.
+     * @param mapFunc a function that transform each value.
+     * @return a new {@link LongStream}.
+     */
+    default public LongStream mapToLong(final ToLongFunc1<T> mapFunc) {
+        return LongStream.from(this, mapFunc);
+    }
+
+    /**
+     * Map each element from this publisher to a primitive double.
+     * @param mapFunc a function that transform each value.
+     * @return a new {@link DoubleStream}.
+     */
+    default public DoubleStream mapToDouble(final ToDoubleFunc1<T> mapFunc) {
+        return DoubleStream.from(this, mapFunc);
     }
 
     /**
@@ -263,7 +542,58 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@code Stream<Tuple<O, O>>} where each tuple contains the input value and mapped value.
      */
     default public <O> Stream<Tuple<T, O>> mapManyWith(final Func1<T, Stream<O>> mapFunc) {
-        return chain(new Transforms.MapManyWith<T, O>(mapFunc));
+        return compose(s -> s.chain(new Transforms.MapManyWith<T, O>(mapFunc)));
+    }
+
+    /**
+     * Add a flatMap operation to the output from this publisher. 
+     * Up to <code>maxConcurrency</code> of the mapped publishers are subscribed to at the same time and 
+     * their output is merged in the order it arrives.
+     * @param mapFunc a function that transform each value to a publisher.
+     * @param maxConcurrency the maximum number of active inner publishers.
+     * @param prefetch the number of elements requested ahead from each inner publisher.
+     * @param <O> type of the output from the transform.
+     * @return a new {@code Stream<O>}.
+     */
+    default public <O> Stream<O> flatMap(final Func1<T, ? extends Publisher<O>> mapFunc, int maxConcurrency, int prefetch) {
+        SpscArrayQueue.checkCapacity(prefetch, "prefetch");
+        return compose(s -> s.chain(new Transforms.FlatMap<T, O>(mapFunc, maxConcurrency, prefetch)));
+    }
+
+    /**
+     * Add a flatMap operation to the output from this publisher, with the default concurrency and prefetch.
+     * @param mapFunc a function that transform each value to a publisher.
+     * @param <O> type of the output from the transform.
+     * @return a new {@code Stream<O>}.
+     */
+    default public <O> Stream<O> flatMap(final Func1<T, ? extends Publisher<O>> mapFunc) {
+        return flatMap(mapFunc, Transforms.FlatMap.DEFAULT_CONCURRENCY, Transforms.FlatMap.DEFAULT_PREFETCH);
+    }
+
+    /**
+     * Add a concatMapEager operation to the output from this publisher. 
+     * Up to <code>maxConcurrency</code> of the mapped publishers are subscribed to ahead of time, but their 
+     * output is emitted in the order of the input values.
+     * @param mapFunc a function that transform each value to a publisher.
+     * @param maxConcurrency the maximum number of active inner publishers.
+     * @param prefetch the number of elements requested ahead from each inner publisher.
+     * @param <O> type of the output from the transform.
+     * @return a new {@code Stream<O>}.
+     */
+    default public <O> Stream<O> concatMapEager(final Func1<T, ? extends Publisher<O>> mapFunc, int maxConcurrency, int prefetch) {
+        SpscArrayQueue.checkCapacity(prefetch, "prefetch");
+        return compose(s -> s.chain(new Transforms.ConcatMapEager<T, O>(mapFunc, maxConcurrency, prefetch)));
+    }
+
+    /**
+     * Add a concatMapEager operation to the output from this publisher, with the default prefetch.
+     * @param mapFunc a function that transform each value to a publisher.
+     * @param maxConcurrency the maximum number of active inner publishers.
+     * @param <O> type of the output from the transform.
+     * @return a new {@code Stream<O>}.
+     */
+    default public <O> Stream<O> concatMapEager(final Func1<T, ? extends Publisher<O>> mapFunc, int maxConcurrency) {
+        return concatMapEager(mapFunc, maxConcurrency, Transforms.FlatMap.DEFAULT_PREFETCH);
     }
 
 
@@ -277,7 +607,7 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@code Stream<T>} with a single element.
      */
     default public Stream<T> last() {
-        return chain(new Filters.Last<T>());
+        return compose(s -> s.chain(new Filters.Last<T>()));
     }
 
     /**
@@ -287,7 +617,7 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@code Stream<T>}
      */
     default public Stream<T> skip(int cnt) {
-        return chain(new Filters.Skip<T>(cnt));
+        return compose(s -> s.chain(new Filters.Skip<T>(cnt)));
     }
 
     /**
@@ -298,7 +628,7 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@code Stream<T>}
      */
     default public Stream<T> take(int cnt) {
-        return chain(new Filters.Take<T>(cnt));
+        return compose(s -> s.chain(new Filters.Take<T>(cnt)));
     }
 
     /**
@@ -307,7 +637,7 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@code Stream<T>}
      */
     default public Stream<T> nop() {
-        return chain(new Filters.Nop<T>());
+        return compose(s -> s.chain(new Filters.Nop<T>()));
     }
 
     /**
@@ -316,7 +646,7 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@code Stream<T>}
      */
     default public Stream<T> ignore() {
-        return chain(new Filters.Ignore<T>());
+        return compose(s -> s.chain(new Filters.Ignore<T>()));
     }
 
     /**
@@ -326,7 +656,7 @@ public interface Stream<T> extends Publisher<T> {
      *@return a new {@link Stream}
      */
     default public Stream<T> done() {
-        return chain(new Filters.Done<T>());
+        return compose(s -> s.chain(new Filters.Done<T>()));
     }
 
     /**
@@ -337,7 +667,7 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@link Stream}
      */ 
     default public Stream<T> filter(Func1<T, Boolean> func) {
-        return chain(new Filters.Filter<T>(func));
+        return compose(s -> s.chain(new Filters.Filter<T>(func)));
     }
 
     /**
@@ -374,7 +704,7 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@link Stream}
      */ 
     default public <O> Stream<O> whenDone(Func0<Stream<O>> func) {
-        return chain(new Flows.WhenDone<T, O>(func));
+        return compose(s -> s.chain(new Flows.WhenDone<T, O>(func)));
     }
 
 
@@ -421,7 +751,7 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@link Stream}
      */ 
     default public Stream<T> continueWith(Func0<Stream<T>> func) {
-        return chain(new Flows.ContinueWith<T>(func));
+        return compose(s -> s.chain(new Flows.ContinueWith<T>(func)));
     }
 
     /**
@@ -453,7 +783,7 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@link Stream}
      */
     default  public Stream<T> each(Proc2<BaseProcessor<T, T>, T> func) {
-        return chain(new Filters.Nop<T>() {
+        return compose(s -> s.chain(new Filters.Nop<T>() {
             @Override
             public void doNext(T value) {
                 try {
@@ -462,7 +792,7 @@ public interface Stream<T> extends Publisher<T> {
                     sendError(e);
                 }
             }
-        });
+        }));
     }
 
     /**
@@ -472,19 +802,7 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@link Stream}
      */
     default public Stream<T> onEach(Proc1<T> func) {
-        return chain(new Filters.Nop<T>() {
-            @Override
-            public void doNext(T value) {
-                try {
-                    func.apply(value);
-                    sendNext(value);
-                    handled();
-                } catch (Throwable e) {
-                    sendError(e);
-                    sendCancel();
-                }
-            }
-        });
+        return compose(s -> s.chain(new Filters.OnEach<T>(func)));
     }
 
     /**
@@ -495,7 +813,7 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@link Stream}
      */ 
     default public Stream<T> onComplete(Proc0 func) {
-        return chain(new Filters.Nop<T>() {
+        return compose(s -> s.chain(new Filters.Nop<T>() {
             @Override
             public void onComplete() {
                 try {
@@ -506,7 +824,7 @@ public interface Stream<T> extends Publisher<T> {
                     sendCancel();
                 }
             }
-        });
+        }));
     }
 
     
@@ -518,7 +836,7 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@link Stream}
      */ 
     default public Stream<T> onError(Proc1<Throwable> func) {
-        return chain(new Filters.Nop<T>() {
+        return compose(s -> s.chain(new Filters.Nop<T>() {
             @Override
             public void onError(Throwable exc) {
                 try {
@@ -529,7 +847,7 @@ public interface Stream<T> extends Publisher<T> {
                     sendCancel();
                 }
             }
-        });
+        }));
     }
 
     /**
@@ -540,7 +858,7 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@link Stream}
      */
     default public Stream<T> onFinally(Proc0 func) {
-        return chain(new Flows.Finally<T>(func));
+        return compose(s -> s.chain(new Flows.Finally<T>(func)));
     }
 
     /**
@@ -553,7 +871,7 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@link Stream}
      */ 
     default public Stream<T> print(String prefix, PrintStream printStream) {
-        return chain(new Filters.Print<T>(prefix, printStream));
+        return compose(s -> s.chain(new Filters.Print<T>(prefix, printStream)));
     }
 
     /**
@@ -563,7 +881,30 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@link Stream}
      */ 
     default public Stream<List<T>> toList() {
-        return chain(new Transforms.ToList<T>());
+        return compose(s -> s.chain(new Transforms.ToList<T>()));
+    }
+
+    /**
+     * Return a sequential <code>java.util.stream.Stream</code> that pull the elements from this publisher. 
+     * The publisher is subscribed to when the java stream start, and up to <code>prefetch</code> elements 
+     * are requested ahead of the consumer, which block when no element is available. 
+     * Closing the java stream cancel the subscription.
+     * @param prefetch the number of elements to request ahead.
+     * @return a new java stream.
+     */
+    default public java.util.stream.Stream<T> toJavaStream(int prefetch) {
+        SpscArrayQueue.checkCapacity(prefetch, "prefetch");
+        Blocking.Pull<T> pull = new Blocking.Pull<T>(this, prefetch);
+        return StreamSupport.stream(pull, false).onClose(pull::cancel);
+    }
+
+    /**
+     * Return a sequential <code>java.util.stream.Stream</code> that pull the elements from this publisher 
+     * with the default prefetch.
+     * @return a new java stream.
+     */
+    default public java.util.stream.Stream<T> toJavaStream() {
+        return toJavaStream(Async.DEFAULT_PREFETCH);
     }
 
     /**
@@ -576,7 +917,311 @@ public interface Stream<T> extends Publisher<T> {
      * @return a new {@link Stream}
      */
     default public Stream<T> accumulate(T initial, final Func2<T, T, T> func) {
-        return chain(new Filters.Accumulator<T>(initial, func));
+        return compose(s -> s.chain(new Filters.Accumulator<T>(initial, func)));
+    }
+
+    /**
+     * Add a <code>publishOn</code> operation to the output from this publisher.
+     * The publishOn operation emit the elements on a thread from the <code>executor</code>. 
+     * Up to <code>prefetch</code> elements are requested from this publisher ahead of the demand.
+     * @param executor the executor that emit the elements.
+     * @param prefetch the number of elements that is buffered between the threads.
+     * @return a new {@link Stream}
+     */
+    default public Stream<T> publishOn(Executor executor, int prefetch) {
+        SpscArrayQueue.checkCapacity(prefetch, "prefetch");
+        return compose(s -> s.chain(new Async.PublishOn<T>(executor, prefetch)));
+    }
+
+    /**
+     * Add a <code>publishOn</code> operation to the output from this publisher, with the default prefetch.
+     * @param executor the executor that emit the elements.
+     * @return a new {@link Stream}
+     */
+    default public Stream<T> publishOn(Executor executor) {
+        return publishOn(executor, Async.DEFAULT_PREFETCH);
+    }
+
+    /**
+     * Add a <code>subscribeOn</code> operation to this publisher.
+     * The subscribeOn operation subscribe to this publisher and send the requests to it 
+     * on a thread from the <code>executor</code>.
+     * @param executor the executor.
+     * @return a new {@link Stream}
+     */
+    default public Stream<T> subscribeOn(Executor executor) {
+        return compose(s -> s.chain(new Async.SubscribeOn<T>(executor)));
+    }
+
+    /**
+     * Add a <code>trampoline</code> operation to the output from this publisher.
+     * The elements and requests that pass the trampoline operation are run from a loop on the current
+     * thread instead of as nested calls, so a long synchronous pipeline can be split into segments 
+     * that does not add to each others stack depth.
+     * @param prefetch the number of elements to request from this publisher.
+     * @return a new {@link Stream}
+     */
+    default public Stream<T> trampoline(int prefetch) {
+        SpscArrayQueue.checkCapacity(prefetch, "prefetch");
+        return compose(s -> s.chain(new Async.Trampolined<T>(prefetch)));
+    }
+
+    /**
+     * Add a <code>trampoline</code> operation to the output from this publisher, with the default prefetch.
+     * @return a new {@link Stream}
+     */
+    default public Stream<T> trampoline() {
+        return trampoline(Async.DEFAULT_PREFETCH);
+    }
+
+    /**
+     * Add a multicast processor to the output from this publisher. The returned stream can be subscribed to
+     * several times, and each element is emitted to all the current subscribers from a shared ring buffer.
+     * @param capacity the size of the ring buffer.
+     * @param overflow what to do when a subscriber can not keep up.
+     * @return a new {@link Stream} that can have several subscribers.
+     */
+    default public Stream<T> multicast(int capacity, Multicast.Overflow overflow) {
+        SpscArrayQueue.checkCapacity(capacity, "capacity");
+        return chain(new Multicast.Ring<T>(capacity, overflow));
+    }
+
+    /**
+     * Add a multicast processor to the output from this publisher, where the input is requested at the speed
+     * of the slowest subscriber.
+     * @param capacity the size of the ring buffer.
+     * @return a new {@link Stream} that can have several subscribers.
+     */
+    default public Stream<T> multicast(int capacity) {
+        return multicast(capacity, Multicast.Overflow.BACKPRESSURE);
+    }
+
+    /**
+     * Cache the output from this publisher. This publisher is subscribed to once, and all the elements 
+     * are replayed to each subscriber.
+     * @return a new {@link Stream} that can have several subscribers.
+     */
+    default public Stream<T> cache() {
+        return new Multicast.Replay<T>(this, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, null, null);
+    }
+
+    /**
+     * Cache the output from this publisher, where the elements after the first <code>maxInMemory</code> 
+     * elements are encoded and stored in a memory-mapped temporary file. The file is deleted when the 
+     * returned replay is disposed.
+     * @param maxInMemory the number of elements that is kept in memory.
+     * @param encoder the function that encode an element.
+     * @param decoder the function that decode an element.
+     * @return a new {@link Multicast.Replay} that can have several subscribers.
+     */
+    default public Multicast.Replay<T> cache(int maxInMemory, Func1<T, byte[]> encoder, Func1<byte[], T> decoder) {
+        return new Multicast.Replay<T>(this, Integer.MAX_VALUE, 0, maxInMemory, encoder, decoder);
+    }
+
+    /**
+     * Replay the output from this publisher. This publisher is subscribed to once, and the last 
+     * <code>maxElements</code> elements are replayed to a new subscriber.
+     * @param maxElements the number of elements to replay.
+     * @return a new {@link Stream} that can have several subscribers.
+     */
+    default public Stream<T> replay(int maxElements) {
+        return new Multicast.Replay<T>(this, maxElements, 0, Integer.MAX_VALUE, null, null);
+    }
+
+    /**
+     * Replay the output from this publisher. This publisher is subscribed to once, and the elements that 
+     * are younger than <code>maxAge</code> are replayed to a new subscriber.
+     * @param maxAge the maximum age of the elements to replay.
+     * @param unit the unit of maxAge.
+     * @return a new {@link Stream} that can have several subscribers.
+     */
+    default public Stream<T> replay(long maxAge, TimeUnit unit) {
+        return new Multicast.Replay<T>(this, Integer.MAX_VALUE, unit.toNanos(maxAge), Integer.MAX_VALUE, null, null);
+    }
+
+    /**
+     * Split the output from this publisher into <code>rails</code> rails that are processed in parallel 
+     * on the <code>executor</code>. The elements are distributed round-robin, or by the hash of the 
+     * <code>key</code> when it is not null, so that elements with the same key are processed on the same rail.
+     * @param rails the number of rails.
+     * @param executor the executor that run the rails.
+     * @param key a function that return the key of an element, or null.
+     * @return a new {@link ParallelStream}
+     */
+    default public ParallelStream<T> parallel(int rails, Executor executor, Func1<T, ?> key) {
+        SpscArrayQueue.checkCapacity(rails, "rails");
+        return new Parallel.Rails<T>(this, rails, executor, Async.DEFAULT_PREFETCH, key);
+    }
+
+    /**
+     * Split the output from this publisher into <code>rails</code> rails that are processed in parallel 
+     * on the <code>executor</code>. The elements are distributed round-robin.
+     * @param rails the number of rails.
+     * @param executor the executor that run the rails.
+     * @return a new {@link ParallelStream}
+     */
+    default public ParallelStream<T> parallel(int rails, Executor executor) {
+        return parallel(rails, executor, null);
+    }
+
+    /**
+     * Split the output from this publisher into <code>rails</code> rails that are processed in parallel 
+     * on the common {@link ForkJoinPool}.
+     * @param rails the number of rails.
+     * @return a new {@link ParallelStream}
+     */
+    default public ParallelStream<T> parallel(int rails) {
+        return parallel(rails, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Add a <code>timeout</code> operation to the output from this publisher. 
+     * The timeout operation fail with a {@link java.util.concurrent.TimeoutException} and cancel this publisher 
+     * when no element is received within <code>timeout</code> of the first request or of the previous element.
+     * @param timeout the maximum time between elements.
+     * @param unit the unit of the timeout.
+     * @param scheduler the scheduler.
+     * @return a new {@link Stream}
+     */
+    default public Stream<T> timeout(long timeout, TimeUnit unit, Scheduler scheduler) {
+        return compose(s -> s.chain(new Time.Timeout<T>(timeout, unit, scheduler)));
+    }
+
+    /**
+     * Add a <code>timeout</code> operation to the output from this publisher. 
+     * The timeout operation fail with a {@link java.util.concurrent.TimeoutException} and cancel this publisher 
+     * when no element is received within <code>timeout</code> of the first request or of the previous element.
+     * @param timeout the maximum time between elements.
+     * @param unit the unit of the timeout.
+     * The events are scheduled on the shared {@link HashedWheelTimer}.
+     * @return a new {@link Stream}
+     */
+    default public Stream<T> timeout(long timeout, TimeUnit unit) {
+        return timeout(timeout, unit, Scheduler.timer());
+    }
+
+    /**
+     * Add a <code>delay</code> operation to the output from this publisher. 
+     * The delay operation emit each element, and the end event, <code>delay</code> after it is received.
+     * @param delay the delay.
+     * @param unit the unit of the delay.
+     * @param scheduler the scheduler.
+     * @return a new {@link Stream}
+     */
+    default public Stream<T> delay(long delay, TimeUnit unit, Scheduler scheduler) {
+        return compose(s -> s.chain(new Time.Delay<T>(delay, unit, scheduler)));
+    }
+
+    /**
+     * Add a <code>delay</code> operation to the output from this publisher. 
+     * The delay operation emit each element, and the end event, <code>delay</code> after it is received.
+     * @param delay the delay.
+     * @param unit the unit of the delay.
+     * The events are scheduled on the shared {@link HashedWheelTimer}.
+     * @return a new {@link Stream}
+     */
+    default public Stream<T> delay(long delay, TimeUnit unit) {
+        return delay(delay, unit, Scheduler.timer());
+    }
+
+    /**
+     * Add a <code>debounce</code> operation to the output from this publisher. 
+     * The debounce operation emit an element when no other element is received within <code>time</code>, 
+     * elements that are followed by another element within the time are dropped.
+     * @param time the quiet time before an element is emitted.
+     * @param unit the unit of the time.
+     * @param scheduler the scheduler.
+     * @return a new {@link Stream}
+     */
+    default public Stream<T> debounce(long time, TimeUnit unit, Scheduler scheduler) {
+        return compose(s -> s.chain(new Time.Debounce<T>(time, unit, scheduler)));
+    }
+
+    /**
+     * Add a <code>debounce</code> operation to the output from this publisher. 
+     * The debounce operation emit an element when no other element is received within <code>time</code>, 
+     * elements that are followed by another element within the time are dropped.
+     * @param time the quiet time before an element is emitted.
+     * @param unit the unit of the time.
+     * The events are scheduled on the shared {@link HashedWheelTimer}.
+     * @return a new {@link Stream}
+     */
+    default public Stream<T> debounce(long time, TimeUnit unit) {
+        return debounce(time, unit, Scheduler.timer());
+    }
+
+    /**
+     * Add a <code>sample</code> operation to the output from this publisher. 
+     * The sample operation emit the latest received element every <code>period</code>, the other elements are dropped.
+     * @param period the sample period.
+     * @param unit the unit of the period.
+     * @param scheduler the scheduler.
+     * @return a new {@link Stream}
+     */
+    default public Stream<T> sample(long period, TimeUnit unit, Scheduler scheduler) {
+        return compose(s -> s.chain(new Time.Sample<T>(period, unit, scheduler)));
+    }
+
+    /**
+     * Add a <code>sample</code> operation to the output from this publisher. 
+     * The sample operation emit the latest received element every <code>period</code>, the other elements are dropped.
+     * @param period the sample period.
+     * @param unit the unit of the period.
+     * The events are scheduled on the shared {@link HashedWheelTimer}.
+     * @return a new {@link Stream}
+     */
+    default public Stream<T> sample(long period, TimeUnit unit) {
+        return sample(period, unit, Scheduler.timer());
+    }
+
+    /**
+     * Add a <code>throttleFirst</code> operation to the output from this publisher. 
+     * The throttleFirst operation emit an element and then drop the elements that is received within <code>window</code>.
+     * @param window the time after an emitted element where elements are dropped.
+     * @param unit the unit of the window.
+     * @param scheduler the scheduler.
+     * @return a new {@link Stream}
+     */
+    default public Stream<T> throttleFirst(long window, TimeUnit unit, Scheduler scheduler) {
+        return compose(s -> s.chain(new Time.ThrottleFirst<T>(window, unit, scheduler)));
+    }
+
+    /**
+     * Add a <code>throttleFirst</code> operation to the output from this publisher. 
+     * The throttleFirst operation emit an element and then drop the elements that is received within <code>window</code>.
+     * @param window the time after an emitted element where elements are dropped.
+     * @param unit the unit of the window.
+     * The events are scheduled on the shared {@link HashedWheelTimer}.
+     * @return a new {@link Stream}
+     */
+    default public Stream<T> throttleFirst(long window, TimeUnit unit) {
+        return throttleFirst(window, unit, Scheduler.timer());
+    }
+
+    /**
+     * Add a <code>bufferTimeout</code> operation to the output from this publisher. 
+     * The bufferTimeout operation collect the elements in lists of up to <code>maxSize</code> elements, and emit 
+     * a list when it is full or when <code>maxLatency</code> have passed since the first element in the list was received.
+     * @param maxSize the maximum number of elements in a list.
+     * @param maxLatency the maximum time an element is kept before it is emitted.
+     * @param unit the unit of the latency.
+     * @param scheduler the scheduler.
+     * @return a new {@link Stream}
+     */
+    default public Stream<List<T>> bufferTimeout(int maxSize, long maxLatency, TimeUnit unit, Scheduler scheduler) {
+        return compose(s -> s.chain(new Time.BufferTimeout<T>(maxSize, maxLatency, unit, scheduler)));
+    }
+
+    /**
+     * Add a <code>bufferTimeout</code> operation to the output from this publisher, that is scheduled 
+     * on the shared {@link HashedWheelTimer}.
+     * @param maxSize the maximum number of elements in a list.
+     * @param maxLatency the maximum time an element is kept before it is emitted.
+     * @param unit the unit of the latency.
+     * @return a new {@link Stream}
+     */
+    default public Stream<List<T>> bufferTimeout(int maxSize, long maxLatency, TimeUnit unit) {
+        return bufferTimeout(maxSize, maxLatency, unit, Scheduler.timer());
     }
 
     /**
@@ -587,4 +1232,80 @@ public interface Stream<T> extends Publisher<T> {
     default public void start(long elements) {
         subscribe(new Streams.Start<T>(elements));
     }
+
+    /**
+     * Subscribe to this publisher and block the calling thread until the first element is received. 
+     * The subscription is cancelled after the first element. 
+     * An error is thrown, wrapped in a {@link java.util.concurrent.CompletionException} when it is a checked exception.
+     * @return the first element, or null when the publisher complete without any elements.
+     */
+    default public T blockFirst() {
+        return new Blocking.Pull<T>(this, 1).first();
+    }
+
+    /**
+     * Subscribe to this publisher and block the calling thread until the publisher is complete. 
+     * An error is thrown, wrapped in a {@link java.util.concurrent.CompletionException} when it is a checked exception.
+     * @return the last element, or null when the publisher complete without any elements.
+     */
+    default public T blockLast() {
+        Blocking.Pull<T> pull = new Blocking.Pull<T>(this, Async.DEFAULT_PREFETCH);
+        T last = null;
+        T value;
+        while ((value = pull.poll()) != null) {
+            last = value;
+        }
+        return last;
+    }
+
+    /**
+     * Subscribe to this publisher and call the <code>func</code> for each element on the calling thread, 
+     * which is blocked until the publisher is complete. Up to <code>prefetch</code> elements are requested 
+     * ahead of the function. An exception from the function cancel the subscription. 
+     * Errors are thrown, wrapped in a {@link java.util.concurrent.CompletionException} when it is a checked exception.
+     * @param prefetch the number of elements to request ahead.
+     * @param func the function that is called for each element.
+     */
+    default public void forEach(int prefetch, Proc1<T> func) {
+        SpscArrayQueue.checkCapacity(prefetch, "prefetch");
+        Blocking.Pull<T> pull = new Blocking.Pull<T>(this, prefetch);
+        T value;
+        while ((value = pull.poll()) != null) {
+            try {
+                func.apply(value);
+            } catch (Throwable t) {
+                pull.cancel();
+                throw Blocking.propagate(t);
+            }
+        }
+    }
+
+    /**
+     * Subscribe to this publisher and call the <code>func</code> for each element on the calling thread, 
+     * with the default prefetch.
+     * @param func the function that is called for each element.
+     */
+    default public void forEach(Proc1<T> func) {
+        forEach(Async.DEFAULT_PREFETCH, func);
+    }
+
+    /**
+     * Return an <code>Iterable</code> where each iterator subscribe to this publisher and block in 
+     * <code>hasNext()</code> until the next element is available. Up to <code>prefetch</code> elements 
+     * are requested ahead of the iterator. 
+     * @param prefetch the number of elements to request ahead.
+     * @return a new iterable.
+     */
+    default public Iterable<T> toIterable(int prefetch) {
+        SpscArrayQueue.checkCapacity(prefetch, "prefetch");
+        return () -> new Blocking.Pull<T>(this, prefetch);
+    }
+
+    /**
+     * Return an <code>Iterable</code> that block in <code>hasNext()</code>, with the default prefetch.
+     * @return a new iterable.
+     */
+    default public Iterable<T> toIterable() {
+        return toIterable(Async.DEFAULT_PREFETCH);
+    }
 }
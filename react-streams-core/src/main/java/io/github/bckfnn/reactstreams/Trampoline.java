@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * An executor that run the tasks on the calling thread, one after the other.
+ * When a task is executed from inside another task on the same thread, it is queued and run when the 
+ * outer task returns, instead of being called recursively. The stack depth therefore stays the same no 
+ * matter how many tasks schedule each other. An exception from a task is reported to the uncaught exception 
+ * handler of the thread and the remaining tasks are still run.
+ */
+public class Trampoline implements Executor {
+    /**
+     * The shared instance. The queue of tasks is kept per thread.
+     */
+    public static final Trampoline INSTANCE = new Trampoline();
+
+    private static final ThreadLocal<Loop> LOOP = ThreadLocal.withInitial(Loop::new);
+
+    private Trampoline() {
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Loop loop = LOOP.get();
+        if (loop.running) {
+            loop.tasks.offer(task);
+            return;
+        }
+        loop.running = true;
+        try {
+            Runnable r = task;
+            while (r != null) {
+                run(r);
+                r = loop.tasks.poll();
+            }
+        } finally {
+            loop.running = false;
+        }
+    }
+
+    /**
+     * Run a task. A failing task is reported to the uncaught exception handler of the thread, it must not
+     * drop the tasks that are queued after it.
+     */
+    private static void run(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+        }
+    }
+
+    /**
+     * @return true if the current thread is running a task from the trampoline.
+     */
+    public static boolean isActive() {
+        return LOOP.get().running;
+    }
+
+    /**
+     * The per-thread state.
+     */
+    private static class Loop {
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        boolean running = false;
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams.ops;
+
+import io.github.bckfnn.reactstreams.BaseProcessor;
+import io.github.bckfnn.reactstreams.BaseSubscription;
+import io.github.bckfnn.reactstreams.SpscArrayQueue;
+import io.github.bckfnn.reactstreams.Stream;
+import io.github.bckfnn.reactstreams.Trampoline;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Asynchronous boundary operations.
+ */
+public class Async {
+    /**
+     * The default number of elements that is prefetched by an asynchronous boundary.
+     */
+    public static final int DEFAULT_PREFETCH = BaseProcessor.DEFAULT_PREFETCH;
+
+    /**
+     * <code>PublishOn</code> emit the input elements on a thread from the <code>executor</code>.
+     * Up to <code>prefetch</code> elements are requested from the input and kept in a single-producer /
+     * single-consumer queue. When 75% of the prefetched elements have been emitted, the same amount is
+     * requested again.
+     *
+     * @param <T> type of the stream.
+     */
+    public static class PublishOn<T> extends BaseProcessor<T, T> {
+        private final Executor executor;
+        private final int prefetch;
+        private final int limit;
+        private final SpscArrayQueue<T> buffer;
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private int consumed = 0;
+        private volatile boolean done = false;
+        private Throwable error;
+
+        /**
+         * Constructor.
+         * @param executor the executor that emit the elements.
+         * @param prefetch the number of elements to request from the input.
+         */
+        public PublishOn(Executor executor, int prefetch) {
+            this.executor = executor;
+            this.prefetch = prefetch;
+            this.limit = prefetch - (prefetch >> 2);
+            this.buffer = new SpscArrayQueue<T>(prefetch);
+        }
+
+        @Override
+        public void doNext(T value) {
+            if (!buffer.offer(value)) {
+                sendCancel();
+                onError(new IllegalStateException("more elements received than requested"));
+                return;
+            }
+            handled();
+            schedule();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void sendRequest(long n) {
+            if (started.compareAndSet(false, true)) {
+                super.sendRequest(prefetch);
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException exc) {
+                    // the drain loop is not running and never will, so the error can be sent from here.
+                    buffer.clear();
+                    sendCancel();
+                    sendError(exc);
+                }
+            }
+        }
+
+        @Override
+        public int characteristics() {
+            return getInputCharacteristics();
+        }
+
+        @Override
+        public long estimateSize() {
+            return getInputSize();
+        }
+
+        private void drain() {
+            int missed = 1;
+            for (;;) {
+                while (getPendingDemand() > 0) {
+                    if (isCancelled()) {
+                        buffer.clear();
+                        return;
+                    }
+                    boolean d = done;
+                    T value = buffer.poll();
+                    if (value == null) {
+                        if (d) {
+                            terminate();
+                            return;
+                        }
+                        break;
+                    }
+                    sendNext(value);
+                    if (++consumed == limit) {
+                        consumed = 0;
+                        super.sendRequest(limit);
+                    }
+                }
+                if (isCancelled()) {
+                    buffer.clear();
+                    return;
+                }
+                if (done && buffer.isEmpty()) {
+                    terminate();
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void terminate() {
+            if (error != null) {
+                sendError(error);
+            } else {
+                sendComplete();
+            }
+        }
+    }
+
+    /**
+     * <code>Trampolined</code> break up the call stack of a synchronous pipeline. 
+     * Both the elements and the requests that pass through the operation are run as tasks on the
+     * {@link Trampoline} of the current thread, so when several of these operations are chained, each
+     * segment between them run from the trampoline loop instead of being nested inside the previous segment.
+     *
+     * @param <T> type of the stream.
+     */
+    public static class Trampolined<T> extends PublishOn<T> {
+        /**
+         * Constructor.
+         * @param prefetch the number of elements to request from the input.
+         */
+        public Trampolined(int prefetch) {
+            super(Trampoline.INSTANCE, prefetch);
+        }
+
+        @Override
+        public void sendRequest(long n) {
+            Trampoline.INSTANCE.execute(() -> Trampolined.super.sendRequest(n));
+        }
+    }
+
+    /**
+     * <code>SubscribeOn</code> subscribe to the input publisher and request elements from it
+     * on a thread from the <code>executor</code>. The input is subscribed to when the output is subscribed to.
+     * <p>
+     * The requests are added up and sent from a single task at a time, that is guarded by a work-in-progress
+     * counter, so the input receive its request() and cancel() calls serially even when the executor has
+     * several threads.
+     *
+     * @param <T> type of the stream.
+     */
+    public static class SubscribeOn<T> extends BaseProcessor<T, T> {
+        private final Executor executor;
+        private final AtomicReference<Publisher<? extends T>> source = new AtomicReference<>();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean subscribed = false;
+        private volatile boolean cancelled = false;
+
+        /**
+         * Constructor.
+         * @param executor the executor that subscribe to the input and request elements from it.
+         */
+        public SubscribeOn(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void subscribeTo(Publisher<? extends T> input) {
+            source.set(input);
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super T> subscriber) {
+            super.subscribe(subscriber);
+            Publisher<? extends T> input = source.getAndSet(null);
+            if (input != null) {
+                try {
+                    executor.execute(() -> input.subscribe(this));
+                } catch (RejectedExecutionException exc) {
+                    sendError(exc);
+                }
+            }
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            super.onSubscribe(s);
+            subscribed = true;
+            schedule();
+        }
+
+        @Override
+        public void doNext(T value) {
+            sendNext(value);
+            handled();
+        }
+
+        @Override
+        public void sendRequest(long n) {
+            requested.accumulateAndGet(n, BaseSubscription::addCap);
+            schedule();
+        }
+
+        @Override
+        public void sendCancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        @Override
+        public int characteristics() {
+            return getInputCharacteristics();
+        }
+
+        @Override
+        public long estimateSize() {
+            return getInputSize();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException exc) {
+                    // no request can be sent to the input any more.
+                    super.sendCancel();
+                    sendError(exc);
+                }
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            for (;;) {
+                if (cancelled) {
+                    super.sendCancel();
+                    return;
+                }
+                if (subscribed) {
+                    long n = requested.getAndSet(0);
+                    if (n > 0) {
+                        super.sendRequest(n);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams.ops;
+
+import io.github.bckfnn.reactstreams.BaseSubscription;
+import io.github.bckfnn.reactstreams.Emitter;
+import io.github.bckfnn.reactstreams.Proc1;
+import io.github.bckfnn.reactstreams.SpscArrayQueue;
+import io.github.bckfnn.reactstreams.Stream;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Operations that run blocking code.
+ * <p>
+ * The blocking code run on the executor returned from {@link #executor()}, which start a virtual thread for 
+ * each task when the runtime support it (Java 21 and later), and otherwise use a cached pool of daemon threads.
+ */
+public class Blocking {
+    private static final Executor EXECUTOR = createExecutor();
+
+    /**
+     * @return the executor for blocking tasks.
+     */
+    public static Executor executor() {
+        return EXECUTOR;
+    }
+
+    private static Executor createExecutor() {
+        try {
+            // looked up by reflection so the library still run on Java 8.
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (Executor) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "react-streams-blocking");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * A stream that run a generator function on a blocking thread. The generator emit the values with 
+     * {@link Emitter#emit(Object)}, which block until there is demand. The stream complete when the 
+     * generator return and fail if it throws an exception.
+     *
+     * @param <T> type of the stream.
+     */
+    public static class Generate<T> implements Stream<T> {
+        private final Proc1<Emitter<T>> generator;
+        private final Executor executor;
+
+        /**
+         * Constructor.
+         * @param generator the generator function.
+         * @param executor the executor that run the generator.
+         */
+        public Generate(Proc1<Emitter<T>> generator, Executor executor) {
+            this.generator = generator;
+            this.executor = executor;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super T> subscriber) {
+            GenerateSubscription s = new GenerateSubscription(subscriber);
+            subscriber.onSubscribe(s);
+            s.activate();
+            Emitter<T> emitter = new Emitter<T>() {
+                @Override
+                public void emit(T value) throws InterruptedException {
+                    s.awaitDemand();
+                    s.sendNext(value);
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return s.isCancelled();
+                }
+            };
+            executor.execute(() -> {
+                try {
+                    generator.apply(emitter);
+                    s.sendComplete();
+                } catch (Throwable t) {
+                    if (!s.isCancelled()) {
+                        s.sendError(t);
+                    }
+                }
+            });
+        }
+
+        /**
+         * The generator thread wait on a condition until there is demand, and request() only take 
+         * the lock when the generator is waiting.
+         */
+        private class GenerateSubscription extends BaseSubscription<T> {
+            private final ReentrantLock lock = new ReentrantLock();
+            private final Condition demand = lock.newCondition();
+            private volatile boolean waiting = false;
+
+            GenerateSubscription(Subscriber<? super T> subscriber) {
+                super(subscriber);
+            }
+
+            @Override
+            public void request(long n) {
+                super.request(n);
+                wakeup();
+            }
+
+            @Override
+            public void cancel() {
+                super.cancel();
+                wakeup();
+            }
+
+            private void wakeup() {
+                if (waiting) {
+                    lock.lock();
+                    try {
+                        demand.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+
+            void awaitDemand() throws InterruptedException {
+                if (getPendingDemand() == 0 && !isCancelled()) {
+                    lock.lock();
+                    try {
+                        waiting = true;
+                        while (getPendingDemand() == 0 && !isCancelled()) {
+                            demand.await();
+                        }
+                    } finally {
+                        waiting = false;
+                        lock.unlock();
+                    }
+                }
+                if (isCancelled()) {
+                    throw new CancellationException("the subscription is cancelled");
+                }
+            }
+
+            @Override
+            protected boolean isCancelled() {
+                return super.isCancelled();
+            }
+        }
+    }
+
+    /**
+     * Return an exception that can be thrown from a blocking call.
+     * @param t the exception.
+     * @return the exception itself if it is a runtime exception, otherwise a {@link CompletionException} that wrap it.
+     * An {@link Error} is thrown directly.
+     */
+    public static RuntimeException propagate(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new CompletionException(t);
+    }
+
+    /**
+     * A subscriber that let a blocking consumer pull the elements with {@link #poll()}, as a {@link Spliterator} 
+     * or as an {@link Iterator}. 
+     * The publisher is subscribed to when the first element is pulled, up to <code>prefetch</code> 
+     * elements are requested ahead and kept in a single-producer / single-consumer queue, and when 75% 
+     * of them have been consumed the same amount is requested again. 
+     * <p>
+     * When the queue is empty the consumer first spin for a short while, since the producer is often just about 
+     * to offer the next element, and then park until the producer wake it up. The producer only call unpark() 
+     * when the consumer is parked, so a steady flow of elements is handed over without any system calls.
+     * <p>
+     * An error from the publisher is thrown from the consumer, wrapped in a {@link CompletionException} when 
+     * it is a checked exception.
+     *
+     * @param <T> type of the elements.
+     */
+    public static class Pull<T> implements Subscriber<T>, Spliterator<T>, Iterator<T> {
+        /** the number of times the consumer check the queue before it park. */
+        static final int SPIN_LIMIT = 256;
+
+        private final Publisher<T> source;
+        private final int prefetch;
+        private final int limit;
+        private final SpscArrayQueue<T> queue;
+        private volatile Subscription upstream;
+        private volatile boolean cancelled = false;
+        private volatile boolean done = false;
+        private Throwable error;
+        /** number of elements offered by the producer, used with the waiter to avoid a lost wakeup. */
+        private volatile long produced = 0;
+        private volatile Thread waiter;
+        private boolean subscribed = false;
+        private long taken = 0;
+        private int consumed = 0;
+        private T next;
+
+        /**
+         * Constructor.
+         * @param source the publisher.
+         * @param prefetch the number of elements to request ahead.
+         */
+        public Pull(Publisher<T> source, int prefetch) {
+            this.source = source;
+            this.prefetch = prefetch;
+            this.limit = prefetch - (prefetch >> 2);
+            this.queue = new SpscArrayQueue<T>(prefetch);
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            upstream = s;
+            if (cancelled) {
+                s.cancel();
+                return;
+            }
+            s.request(prefetch);
+        }
+
+        @Override
+        public void onNext(T value) {
+            if (!queue.offer(value)) {
+                upstream.cancel();
+                onError(new IllegalStateException("more elements received than requested"));
+                return;
+            }
+            produced++;
+            wakeup();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done = true;
+            wakeup();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            wakeup();
+        }
+
+        private void wakeup() {
+            Thread w = waiter;
+            if (w != null) {
+                LockSupport.unpark(w);
+            }
+        }
+
+        /**
+         * Cancel the subscription, the consumer will not receive any more elements.
+         */
+        public void cancel() {
+            cancelled = true;
+            Subscription s = upstream;
+            if (s != null) {
+                s.cancel();
+            }
+        }
+
+        /**
+         * Return the next element, and wait for it when the queue is empty.
+         * @return the next element, or null when the publisher is complete.
+         */
+        public T poll() {
+            return poll(true);
+        }
+
+        /**
+         * Return the first element and cancel the subscription, no more elements are requested after the prefetch.
+         * @return the first element, or null when the publisher is complete without any elements.
+         */
+        public T first() {
+            try {
+                return poll(false);
+            } finally {
+                cancel();
+            }
+        }
+
+        private T poll(boolean replenish) {
+            if (!subscribed) {
+                subscribed = true;
+                source.subscribe(this);
+            }
+            for (;;) {
+                if (cancelled) {
+                    return null;
+                }
+                boolean d = done;
+                T value = queue.poll();
+                if (value != null) {
+                    taken++;
+                    if (replenish && ++consumed == limit) {
+                        consumed = 0;
+                        upstream.request(limit);
+                    }
+                    return value;
+                }
+                if (d) {
+                    if (error != null) {
+                        throw propagate(error);
+                    }
+                    return null;
+                }
+                await();
+            }
+        }
+
+        private void await() {
+            for (int i = 0; i < SPIN_LIMIT; i++) {
+                if (produced != taken || done || cancelled) {
+                    return;
+                }
+                if (i >= SPIN_LIMIT / 2) {
+                    Thread.yield();
+                }
+            }
+            waiter = Thread.currentThread();
+            while (produced == taken && !done && !cancelled) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    waiter = null;
+                    cancel();
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException(new InterruptedException());
+                }
+            }
+            waiter = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = poll();
+            }
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T value = next;
+            next = null;
+            return value;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (!hasNext()) {
+                return false;
+            }
+            action.accept(next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            while (hasNext()) {
+                action.accept(next());
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = source instanceof Stream ? ((Stream<T>) source).estimateSize() : Long.MAX_VALUE;
+            if (size == Long.MAX_VALUE) {
+                return size;
+            }
+            // the element in the lookahead is taken from the queue, but not yet returned.
+            return Math.max(0, size - taken + (next != null ? 1 : 0));
+        }
+
+        @Override
+        public int characteristics() {
+            return (source instanceof Stream ? ((Stream<T>) source).characteristics() : 0) | Spliterator.NONNULL;
+        }
+    }
+}
@@ -14,12 +14,14 @@
 package io.github.bckfnn.reactstreams.ops;
 
 import java.io.PrintStream;
+import java.util.Spliterator;
 
 import org.reactivestreams.Subscription;
 
 import io.github.bckfnn.reactstreams.BaseProcessor;
 import io.github.bckfnn.reactstreams.Func1;
 import io.github.bckfnn.reactstreams.Func2;
+import io.github.bckfnn.reactstreams.Proc1;
 
 /**
  * Filtering operations.
@@ -41,6 +43,17 @@ public class Filters {
             this.num = num;
         }
 
+        @Override
+        public int characteristics() {
+            return getInputCharacteristics();
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = getInputSize();
+            return size == Long.MAX_VALUE ? size : Math.max(0, size - num);
+        }
+
         @Override
         public void doNext(T value) {
             if (++count > num) {
@@ -50,6 +63,17 @@ public class Filters {
             }
             handled();
         }
+
+        @Override
+        public void doNextBatch(Object[] values, int offset, int length) {
+            int skip = Math.min(Math.max(num - count, 0), length);
+            count += skip;
+            for (int i = 0; i < skip; i++) {
+                sendRequest();
+            }
+            sendNextBatch(values, offset + skip, length - skip);
+            handled(length);
+        }
     }
 
     /**
@@ -62,6 +86,21 @@ public class Filters {
         private T value;
         private boolean onNext = false;
 
+        /**
+         * Constructor.
+         */
+        public Last() {
+            this(UNBOUNDED);
+        }
+
+        /**
+         * Constructor.
+         * @param prefetch the number of elements to request from the input at a time.
+         */
+        public Last(int prefetch) {
+            setPrefetch(prefetch);
+        }
+
         @Override
         public void doNext(T value) {
             onNext = true;
@@ -84,30 +123,32 @@ public class Filters {
      * items where the method returns true. 
      * @param <T> type of the event.
      */
-    public static class Filter<T> extends BaseProcessor<T, T> {
-        private Func1<T, Boolean> func;
-        
+    public static class Filter<T> extends Transforms.Fused<T, T> {
         /**
          * Constructor.
          * @param func a function that map an input value to a stream of output values.
          */
         public Filter(Func1<T, Boolean> func) {
-            this.func = func;
+            super(value -> func.apply(value) ? value : SKIP);
+            retain(~Spliterator.SIZED);
         }
- 
-        @Override
-        public void doNext(T value) {
-            try {
-                if (func.apply(value)) {
-                    sendNext(value);
-                } else {
-                    sendRequest();
-                }
-                handled();
-            } catch (Throwable exc) {
-                sendError(exc);
-                sendCancel();
-            }
+    }
+
+    /**
+     * <code>OnEach</code> will call the func on each item and emit the item unmodified.
+     * @param <T> type of the event.
+     */
+    public static class OnEach<T> extends Transforms.Fused<T, T> {
+        /**
+         * Constructor.
+         * @param func the function that is called for each item.
+         */
+        public OnEach(Proc1<T> func) {
+            super(value -> {
+                func.apply(value);
+                return value;
+            });
+            sideEffects();
         }
     }
 
@@ -127,6 +168,16 @@ public class Filters {
             this.num = num;
         }
 
+        @Override
+        public int characteristics() {
+            return getInputCharacteristics();
+        }
+
+        @Override
+        public long estimateSize() {
+            return Math.min(num, getInputSize());
+        }
+
         @Override
         public void doNext(T value) {
             if (count++ < num) {
@@ -137,6 +188,19 @@ public class Filters {
                 sendComplete();
             }
         }
+
+        @Override
+        public void doNextBatch(Object[] values, int offset, int length) {
+            int take = Math.min(Math.max(num - count, 0), length);
+            count += take;
+            sendNextBatch(values, offset, take);
+            handled(take);
+            if (take < length) {
+                count++;
+                sendCancel();
+                sendComplete();
+            }
+        }
     }
 
 
@@ -262,18 +326,63 @@ public class Filters {
                 sendCancel();
             }
         }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void doNextBatch(Object[] values, int offset, int length) {
+            Object[] out = new Object[length + 1];
+            int n = 0;
+            for (int i = offset, end = offset + length; i < end; i++) {
+                T value = (T) values[i];
+                if (acc == null) {
+                    acc = value;
+                    sendRequest();
+                    continue;
+                }
+                if (!initialValueSent) {
+                    initialValueSent = true;
+                    out[n++] = acc;
+                }
+                try {
+                    acc = func.apply(acc, value);
+                } catch (Throwable exc) {
+                    sendNextBatch(out, 0, n);
+                    sendError(exc);
+                    sendCancel();
+                    return;
+                }
+                out[n++] = acc;
+            }
+            sendNextBatch(out, 0, n);
+            handled(length);
+        }
     }
     
     /**
-     * Accumulator operation.
+     * Ignore operation.
      *
      * @param <T> value type.
      */
     public static class Ignore<T> extends Nop<T> {
+        /**
+         * Constructor.
+         */
+        public Ignore() {
+            this(UNBOUNDED);
+        }
+
+        /**
+         * Constructor.
+         * @param prefetch the number of elements to request from the input at a time.
+         */
+        public Ignore(int prefetch) {
+            setPrefetch(prefetch);
+        }
+
         @Override
         public void doNext(T value) {
+            sendRequest();
             handled();
-            sendRequest(1);
         }
     }
 }
@@ -15,10 +15,14 @@ package io.github.bckfnn.reactstreams.ops;
 
 import io.github.bckfnn.reactstreams.BaseProcessor;
 import io.github.bckfnn.reactstreams.Func0;
+import io.github.bckfnn.reactstreams.Func1;
 import io.github.bckfnn.reactstreams.Pipe;
 import io.github.bckfnn.reactstreams.Proc0;
+import io.github.bckfnn.reactstreams.Proc1;
+import io.github.bckfnn.reactstreams.Scalar;
 import io.github.bckfnn.reactstreams.Stream;
 
+import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 
@@ -50,6 +54,7 @@ public class Flows {
             sendNext(value);
         }
 
+        @SuppressWarnings("unchecked")
         @Override
         public void onComplete() {
             if (cancelled) {
@@ -57,7 +62,17 @@ public class Flows {
                 return;
             }
             try {
-                func.apply().subscribe(new Subscriber<T>() {
+                Stream<T> next = func.apply();
+                if (next instanceof Scalar) {
+                    // the value is read directly, without subscribing.
+                    T value = ((Scalar<T>) next).get();
+                    if (value != null) {
+                        sendNext(value);
+                    }
+                    sendComplete();
+                    return;
+                }
+                next.subscribe(new Subscriber<T>() {
                     @Override
                     public void onSubscribe(Subscription s) {
                         continueSubscription = s;
@@ -131,6 +146,7 @@ public class Flows {
             }
         }
 
+        @SuppressWarnings("unchecked")
         @Override
         public void onComplete() {
             if (cancelled) {
@@ -138,7 +154,17 @@ public class Flows {
                 return;
             }
             try {
-                func.apply().subscribe(new Subscriber<O>() {
+                Stream<O> next = func.apply();
+                if (next instanceof Scalar) {
+                    // the value is read directly, without subscribing.
+                    O value = ((Scalar<O>) next).get();
+                    if (value != null) {
+                        sendNext(value);
+                    }
+                    sendComplete();
+                    return;
+                }
+                next.subscribe(new Subscriber<O>() {
                     @Override
                     public void onSubscribe(Subscription s) {
                         continueSubscription = s;
@@ -183,6 +209,16 @@ public class Flows {
             this.func = func;
         }
 
+        @Override
+        public int characteristics() {
+            return getInputCharacteristics();
+        }
+
+        @Override
+        public long estimateSize() {
+            return getInputSize();
+        }
+
         @Override
         public void doNext(T value) {
             sendNext(value);
@@ -276,6 +312,70 @@ public class Flows {
 
     }
     
+    /**
+     * A re-subscribable stream. The operations that are added to an assembly with 
+     * {@link Stream#compose(Func1)} are recorded instead of applied, and for each subscriber the factory 
+     * is called and the recorded operations are applied to the result. All the per subscription state of the 
+     * processors is therefore created fresh for each subscriber, and the assembly itself is immutable and 
+     * can be subscribed to concurrently.
+     * <p>
+     * map(), filter() and onEach() are recorded as calls to the same methods on the new chain, so they 
+     * are still fused into a single processor.
+     *
+     * @param <T> type of the stream.
+     */
+    public static class Assembly<T> implements Stream<T> {
+        private final Func0<? extends Publisher<T>> factory;
+
+        /**
+         * Constructor.
+         * @param factory the function that create a new chain for each subscriber.
+         */
+        public Assembly(Func0<? extends Publisher<T>> factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super T> subscriber) {
+            Publisher<T> publisher;
+            try {
+                publisher = factory.apply();
+            } catch (Throwable e) {
+                publisher = new Streams.Error<T>(e);
+            }
+            publisher.subscribe(subscriber);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Stream<T> build() throws Throwable {
+            Publisher<T> publisher = factory.apply();
+            if (publisher instanceof Stream) {
+                return (Stream<T>) publisher;
+            }
+            return publisher::subscribe;
+        }
+
+        @Override
+        public <R> Stream<R> compose(Func1<Stream<T>, Stream<R>> operation) {
+            return new Assembly<R>(() -> operation.apply(build()));
+        }
+
+        @Override
+        public <O> Stream<O> map(Func1<T, O> mapFunc) {
+            return compose(s -> s.map(mapFunc));
+        }
+
+        @Override
+        public Stream<T> filter(Func1<T, Boolean> func) {
+            return compose(s -> s.filter(func));
+        }
+
+        @Override
+        public Stream<T> onEach(Proc1<T> func) {
+            return compose(s -> s.onEach(func));
+        }
+    }
+
     /**
      * Pipe operation.
      * @param <I> input value type
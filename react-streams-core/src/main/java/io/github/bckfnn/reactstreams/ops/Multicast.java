@@ -0,0 +1,752 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams.ops;
+
+import io.github.bckfnn.reactstreams.BaseSubscription;
+import io.github.bckfnn.reactstreams.Func1;
+import io.github.bckfnn.reactstreams.Pipe;
+import io.github.bckfnn.reactstreams.SpscArrayQueue;
+import io.github.bckfnn.reactstreams.Stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Multicast operations.
+ */
+public class Multicast {
+    /**
+     * What to do when a subscriber is too slow to keep up with the input.
+     */
+    public enum Overflow {
+        /**
+         * Only request from the input when all the subscribers have room for it. The input run at the 
+         * speed of the slowest subscriber.
+         */
+        BACKPRESSURE,
+        /**
+         * Request everything from the input and overwrite the oldest elements in the ring. A subscriber that 
+         * fall more than the size of the ring behind lose the overwritten elements.
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * A hot processor that emit each input element to all the current subscribers.
+     * <p>
+     * Each input element is written once into a ring buffer at its sequence number modulo the size of the ring, 
+     * and each subscriber has its own cursor into the ring, its own demand and its own drain loop. No element is 
+     * copied per subscriber. A subscriber see the elements that are received after it subscribed.
+     * <p>
+     * With {@link Overflow#BACKPRESSURE} the input is requested up to the smallest demand of the subscribers, 
+     * but never more than the size of the ring ahead of the slowest cursor, so no unread slot is overwritten. 
+     * With {@link Overflow#DROP_OLDEST} everything is requested when the first subscriber request an element. 
+     * Nothing is requested while there are no subscribers.
+     *
+     * @param <T> type of the elements.
+     */
+    public static class Ring<T> implements Pipe<T, T> {
+        private final AtomicReferenceArray<T> buffer;
+        private final int mask;
+        private final Overflow overflow;
+        private final CopyOnWriteArrayList<Cursor> cursors = new CopyOnWriteArrayList<>();
+        private final AtomicInteger requestWip = new AtomicInteger();
+        private volatile Subscription upstream;
+        /** the sequence number of the element that is being written. */
+        private volatile long claimed = 0;
+        /** the number of elements that are written to the ring. */
+        private volatile long produced = 0;
+        private volatile boolean done = false;
+        private Throwable error;
+        /** the number of elements requested from the input, only changed in requestMore(). */
+        private volatile long requested = 0;
+
+        /**
+         * Constructor.
+         * @param capacity the minimum size of the ring, rounded up to a power of two.
+         * @param overflow the overflow policy.
+         */
+        public Ring(int capacity, Overflow overflow) {
+            SpscArrayQueue.checkCapacity(capacity, "capacity");
+            int c = 1;
+            while (c < capacity) {
+                c <<= 1;
+            }
+            this.buffer = new AtomicReferenceArray<T>(c);
+            this.mask = c - 1;
+            this.overflow = overflow;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            upstream = s;
+            requestMore();
+        }
+
+        @Override
+        public void onNext(T value) {
+            long seq = produced;
+            claimed = seq + 1;
+            buffer.set((int) seq & mask, value);
+            produced = seq + 1;
+            drainAll();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done = true;
+            drainAll();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            drainAll();
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super T> subscriber) {
+            Cursor cursor = new Cursor(subscriber);
+            cursors.add(cursor);
+            subscriber.onSubscribe(cursor);
+            cursor.activate();
+            requestMore();
+            cursor.drain();
+        }
+
+        private void drainAll() {
+            for (Cursor cursor : cursors) {
+                cursor.drain();
+            }
+        }
+
+        /**
+         * Request more from the input when all the cursors have moved. 
+         * The calls to request() are serialized by the work-in-progress counter.
+         */
+        private void requestMore() {
+            if (requestWip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                Subscription s = upstream;
+                if (s != null && !done && !cursors.isEmpty()) {
+                    long allowed = Long.MAX_VALUE;
+                    for (Cursor cursor : cursors) {
+                        long i = cursor.index;
+                        long d = cursor.getPendingDemand();
+                        if (overflow == Overflow.DROP_OLDEST) {
+                            if (d > 0) {
+                                allowed = Long.MAX_VALUE;
+                                break;
+                            }
+                            allowed = requested;
+                        } else {
+                            allowed = Math.min(allowed, i + Math.min(d, buffer.length()));
+                        }
+                    }
+                    if (allowed > requested) {
+                        long n = allowed == Long.MAX_VALUE ? Long.MAX_VALUE : allowed - requested;
+                        requested = allowed;
+                        s.request(n);
+                    }
+                }
+                missed = requestWip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * The subscription of a single subscriber, with its own position in the ring.
+         */
+        private class Cursor extends BaseSubscription<T> {
+            private final AtomicInteger wip = new AtomicInteger();
+            private final int limit = Math.max(1, buffer.length() >> 2);
+            /** the sequence number of the next element to emit. */
+            volatile long index = produced;
+
+            Cursor(Subscriber<? super T> subscriber) {
+                super(subscriber);
+            }
+
+            @Override
+            public void request(long n) {
+                super.request(n);
+                if (requested != Long.MAX_VALUE) {
+                    requestMore();
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                super.cancel();
+                cursors.remove(this);
+                requestMore();
+            }
+
+            void drain() {
+                if (wip.getAndIncrement() != 0) {
+                    return;
+                }
+                int missed = 1;
+                for (;;) {
+                    long i = index;
+                    long moved = 0;
+                    while (getPendingDemand() > 0 && !isCancelled()) {
+                        long p = produced;
+                        if (i == p) {
+                            break;
+                        }
+                        if (p - i > buffer.length()) {
+                            // overwritten (DROP_OLDEST), skip to the oldest element in the ring.
+                            i = p - buffer.length();
+                        }
+                        T value = buffer.get((int) i & mask);
+                        if (claimed > i + buffer.length()) {
+                            // the slot was overwritten while it was read.
+                            i = claimed - buffer.length();
+                            continue;
+                        }
+                        sendNext(value);
+                        i++;
+                        if (++moved == limit) {
+                            moved = 0;
+                            index = i;
+                            requestMore();
+                        }
+                    }
+                    index = i;
+                    if (moved > 0) {
+                        requestMore();
+                    }
+                    if (isCancelled()) {
+                        return;
+                    }
+                    if (done && i == produced) {
+                        cursors.remove(this);
+                        if (error != null) {
+                            sendError(error);
+                        } else {
+                            sendComplete();
+                        }
+                        return;
+                    }
+                    missed = wip.addAndGet(-missed);
+                    if (missed == 0) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A stream that subscribe to its input once, when it is first subscribed to, and replay the received elements 
+     * to each subscriber at its own pace.
+     * <p>
+     * The elements are stored in an append-only list of fixed size chunks, so the list never need to be copied 
+     * while it grows. The input is requested at the pace of the subscriber with the most demand.
+     * <p>
+     * The retained elements can be limited to the last <code>maxElements</code> elements and to the elements 
+     * that are younger than <code>maxAge</code>. The limits decide where a new subscriber start, a subscriber that 
+     * is already reading keep a reference to its chunk and still see all the elements. 
+     * When an encoder is given, the elements after the first <code>maxInMemory</code> are encoded and written 
+     * to a memory-mapped spill file instead of being kept on the heap.
+     * <p>
+     * The elements are kept for as long as the replay is reachable, so they can be replayed to a subscriber 
+     * that arrive after the input is complete. Call {@link #dispose()} when the replay is no longer needed, 
+     * to release the elements and delete the spill file at once.
+     *
+     * @param <T> type of the elements.
+     */
+    public static class Replay<T> implements Stream<T>, Subscriber<T> {
+        /**
+         * The number of elements in each chunk.
+         */
+        public static final int CHUNK = 64;
+
+        private final Publisher<T> source;
+        private final int maxElements;
+        private final long maxAge;
+        private final int maxInMemory;
+        private final Spill<T> spill;
+        private final AtomicBoolean connected = new AtomicBoolean();
+        private final AtomicBoolean disposed = new AtomicBoolean();
+        private final CopyOnWriteArrayList<Cursor> cursors = new CopyOnWriteArrayList<>();
+        private final AtomicInteger requestWip = new AtomicInteger();
+        private volatile Subscription upstream;
+        /** the oldest retained chunk. */
+        private volatile Node head;
+        /** the chunk that is appended to, only used by the input thread. */
+        private Node tail;
+        /** the sequence number of the oldest retained element. */
+        private volatile long first = 0;
+        /** the number of elements that have been appended. */
+        private volatile long size = 0;
+        private volatile boolean done = false;
+        private Throwable error;
+        /** the number of elements requested from the input, only changed in requestMore(). */
+        private volatile long requested = 0;
+
+        /**
+         * Constructor.
+         * @param source the input publisher.
+         * @param maxElements the maximum number of elements that is replayed to a new subscriber.
+         * @param maxAge the maximum age in nanoseconds of the elements that is replayed to a new subscriber, or 0.
+         * @param maxInMemory the number of elements to keep in memory before the rest is spilled to disk.
+         * @param encoder the function that encode a spilled element, or null to keep all the elements in memory.
+         * @param decoder the function that decode a spilled element.
+         */
+        public Replay(Publisher<T> source, int maxElements, long maxAge, int maxInMemory, 
+                Func1<T, byte[]> encoder, Func1<byte[], T> decoder) {
+            this.source = source;
+            this.maxElements = maxElements;
+            this.maxAge = maxAge;
+            this.maxInMemory = encoder == null ? Integer.MAX_VALUE : maxInMemory;
+            this.spill = encoder == null ? null : new Spill<T>(encoder, decoder);
+            this.head = new Node(0, maxAge > 0);
+            this.tail = head;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super T> subscriber) {
+            if (disposed.get()) {
+                new Streams.Error<T>(new IllegalStateException("replay is disposed")).subscribe(subscriber);
+                return;
+            }
+            Cursor cursor = new Cursor(subscriber);
+            cursors.add(cursor);
+            subscriber.onSubscribe(cursor);
+            cursor.activate();
+            if (connected.compareAndSet(false, true)) {
+                source.subscribe(this);
+            }
+            cursor.drain();
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            upstream = s;
+            if (disposed.get()) {
+                s.cancel();
+                return;
+            }
+            requestMore();
+        }
+
+        /**
+         * Release the retained elements and delete the spill file. The input is cancelled if it is not complete, 
+         * the current subscribers fail and a new subscriber get an {@link IllegalStateException}.
+         */
+        public void dispose() {
+            if (!disposed.compareAndSet(false, true)) {
+                return;
+            }
+            connected.set(true);
+            Subscription s = upstream;
+            if (s != null) {
+                s.cancel();
+            }
+            head = new Node(size, false);
+            for (Cursor cursor : cursors) {
+                cursor.drain();
+            }
+            if (spill != null) {
+                spill.close();
+            }
+        }
+
+        @Override
+        public void onNext(T value) {
+            if (disposed.get()) {
+                return;
+            }
+            long seq = size;
+            int offset = (int) (seq - tail.start);
+            if (offset == CHUNK) {
+                Node n = new Node(seq, maxAge > 0);
+                tail.next = n;
+                tail = n;
+                offset = 0;
+            }
+            if (seq >= maxInMemory) {
+                try {
+                    tail.positions()[offset] = spill.write(value);
+                } catch (Throwable t) {
+                    upstream.cancel();
+                    onError(t);
+                    return;
+                }
+            } else {
+                tail.values[offset] = value;
+            }
+            if (tail.times != null) {
+                tail.times[offset] = System.nanoTime();
+            }
+            size = seq + 1;
+            trim();
+            for (Cursor cursor : cursors) {
+                cursor.drain();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done = true;
+            for (Cursor cursor : cursors) {
+                cursor.drain();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            for (Cursor cursor : cursors) {
+                cursor.drain();
+            }
+        }
+
+        /**
+         * Drop the elements that are outside the limits, only called from the input thread.
+         */
+        private void trim() {
+            long f = Math.max(first, size - maxElements);
+            if (maxAge > 0) {
+                f = firstYoung(f);
+            }
+            if (f == first) {
+                return;
+            }
+            first = f;
+            Node h = head;
+            while (h.next != null && h.next.start <= f) {
+                h = h.next;
+            }
+            head = h;
+        }
+
+        /**
+         * Find the first element that is not too old.
+         * @param from the sequence number to start the search from.
+         * @return the sequence number of the first young element, or the size when all are too old.
+         */
+        private long firstYoung(long from) {
+            long limit = System.nanoTime() - maxAge;
+            long s = size;
+            Node n = head;
+            long i = from;
+            while (i < s) {
+                while (i - n.start >= CHUNK) {
+                    n = n.next;
+                }
+                if (n.times[(int) (i - n.start)] - limit > 0) {
+                    break;
+                }
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Request more from the input when a subscriber have more demand than what is already requested.
+         * The calls to request() are serialized by the work-in-progress counter.
+         */
+        private void requestMore() {
+            if (requestWip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                Subscription s = upstream;
+                if (s != null && !done) {
+                    long allowed = 0;
+                    for (Cursor cursor : cursors) {
+                        allowed = Math.max(allowed, BaseSubscription.addCap(cursor.index, cursor.getPendingDemand()));
+                    }
+                    if (allowed > requested) {
+                        long n = allowed == Long.MAX_VALUE ? Long.MAX_VALUE : allowed - requested;
+                        requested = allowed;
+                        s.request(n);
+                    }
+                }
+                missed = requestWip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * A chunk of elements.
+         */
+        private static class Node {
+            final long start;
+            final Object[] values = new Object[CHUNK];
+            final long[] times;
+            long[] positions;
+            volatile Node next;
+
+            Node(long start, boolean timed) {
+                this.start = start;
+                this.times = timed ? new long[CHUNK] : null;
+            }
+
+            long[] positions() {
+                if (positions == null) {
+                    positions = new long[CHUNK];
+                }
+                return positions;
+            }
+        }
+
+        /**
+         * The subscription of a single subscriber, with its own position in the chunk list.
+         */
+        private class Cursor extends BaseSubscription<T> {
+            private final AtomicInteger wip = new AtomicInteger();
+            /** the sequence number of the next element to emit. */
+            volatile long index;
+            private Node node;
+
+            Cursor(Subscriber<? super T> subscriber) {
+                super(subscriber);
+                // read head before first, the head chunk never start after the first element.
+                node = head;
+                long i = first;
+                index = maxAge > 0 ? startYoung(i) : i;
+            }
+
+            @Override
+            public void request(long n) {
+                super.request(n);
+                if (requested != Long.MAX_VALUE) {
+                    requestMore();
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                super.cancel();
+                cursors.remove(this);
+            }
+
+            @SuppressWarnings("unchecked")
+            void drain() {
+                if (wip.getAndIncrement() != 0) {
+                    return;
+                }
+                int missed = 1;
+                for (;;) {
+                    if (disposed.get()) {
+                        cursors.remove(this);
+                        sendError(new IllegalStateException("replay is disposed"));
+                        return;
+                    }
+                    long i = index;
+                    long e = 0;
+                    while (e < getPendingDemand() && !isCancelled()) {
+                        if (i == size) {
+                            break;
+                        }
+                        while (i - node.start >= CHUNK) {
+                            node = node.next;
+                        }
+                        int offset = (int) (i - node.start);
+                        T value;
+                        if (i >= maxInMemory) {
+                            try {
+                                value = spill.read(node.positions[offset]);
+                            } catch (Throwable t) {
+                                cursors.remove(this);
+                                sendError(t);
+                                return;
+                            }
+                        } else {
+                            value = (T) node.values[offset];
+                        }
+                        emit(value);
+                        e++;
+                        i++;
+                    }
+                    index = i;
+                    if (e > 0) {
+                        produced(e);
+                    }
+                    if (isCancelled()) {
+                        return;
+                    }
+                    if (done && i == size) {
+                        cursors.remove(this);
+                        if (error != null) {
+                            sendError(error);
+                        } else {
+                            sendComplete();
+                        }
+                        return;
+                    }
+                    missed = wip.addAndGet(-missed);
+                    if (missed == 0) {
+                        return;
+                    }
+                }
+            }
+
+            /**
+             * Skip the elements that are too old when a subscriber start.
+             */
+            private long startYoung(long from) {
+                long limit = System.nanoTime() - maxAge;
+                long s = size;
+                long i = from;
+                while (i < s) {
+                    while (i - node.start >= CHUNK) {
+                        node = node.next;
+                    }
+                    if (node.times[(int) (i - node.start)] - limit > 0) {
+                        break;
+                    }
+                    i++;
+                }
+                return i;
+            }
+        }
+    }
+
+    /**
+     * An append-only spill file for encoded elements. The file is mapped into memory in fixed size segments 
+     * as it grows, and each element is written as its length followed by the encoded bytes. An element can 
+     * span two segments. Written by a single thread and read concurrently by the replay cursors. 
+     * The file is deleted when the spill is closed, or at the latest when the JVM exit.
+     *
+     * @param <T> type of the elements.
+     */
+    static class Spill<T> {
+        static final int SEGMENT = 1 << 24;
+
+        private final Func1<T, byte[]> encoder;
+        private final Func1<byte[], T> decoder;
+        private final CopyOnWriteArrayList<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+        private volatile File file;
+        private volatile boolean closed = false;
+        private long position = 0;
+
+        Spill(Func1<T, byte[]> encoder, Func1<byte[], T> decoder) {
+            this.encoder = encoder;
+            this.decoder = decoder;
+        }
+
+        /**
+         * Write an element to the spill file.
+         * @param value the element.
+         * @return the position of the element.
+         * @exception Throwable when the element can not be encoded or written.
+         */
+        long write(T value) throws Throwable {
+            if (closed) {
+                throw new IllegalStateException("spill file is closed");
+            }
+            if (file == null) {
+                file = File.createTempFile("react-streams-replay", ".spill");
+                file.deleteOnExit();
+                if (closed) {
+                    file.delete();
+                    throw new IllegalStateException("spill file is closed");
+                }
+            }
+            byte[] bytes = encoder.apply(value);
+            long pos = position;
+            byte[] len = ByteBuffer.allocate(4).putInt(bytes.length).array();
+            put(pos, len);
+            put(pos + 4, bytes);
+            position = pos + 4 + bytes.length;
+            return pos;
+        }
+
+        /**
+         * Read an element from the spill file.
+         * @param pos the position of the element.
+         * @return the element.
+         * @exception Throwable when the element can not be decoded.
+         */
+        T read(long pos) throws Throwable {
+            byte[] len = new byte[4];
+            get(pos, len);
+            byte[] bytes = new byte[ByteBuffer.wrap(len).getInt()];
+            get(pos + 4, bytes);
+            return decoder.apply(bytes);
+        }
+
+        /**
+         * Drop the mapped segments and delete the file. The segments are unmapped when they are garbage collected.
+         */
+        void close() {
+            closed = true;
+            segments.clear();
+            File f = file;
+            if (f != null) {
+                f.delete();
+            }
+        }
+
+        private void put(long pos, byte[] bytes) throws IOException {
+            int done = 0;
+            while (done < bytes.length) {
+                long p = pos + done;
+                int seg = (int) (p / SEGMENT);
+                while (segments.size() <= seg) {
+                    // the mapped segment stay valid after the file is closed.
+                    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                        segments.add(raf.getChannel().map(FileChannel.MapMode.READ_WRITE, (long) segments.size() * SEGMENT, SEGMENT));
+                    }
+                }
+                ByteBuffer b = segments.get(seg).duplicate();
+                b.position((int) (p % SEGMENT));
+                int n = Math.min(bytes.length - done, b.remaining());
+                b.put(bytes, done, n);
+                done += n;
+            }
+        }
+
+        private void get(long pos, byte[] bytes) {
+            int done = 0;
+            while (done < bytes.length) {
+                long p = pos + done;
+                ByteBuffer b = segments.get((int) (p / SEGMENT)).duplicate();
+                b.position((int) (p % SEGMENT));
+                int n = Math.min(bytes.length - done, b.remaining());
+                b.get(bytes, done, n);
+                done += n;
+            }
+        }
+    }
+}
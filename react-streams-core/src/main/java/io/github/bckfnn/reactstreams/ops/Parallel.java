@@ -0,0 +1,670 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams.ops;
+
+import io.github.bckfnn.reactstreams.BaseSubscription;
+import io.github.bckfnn.reactstreams.Func0;
+import io.github.bckfnn.reactstreams.Func1;
+import io.github.bckfnn.reactstreams.Func2;
+import io.github.bckfnn.reactstreams.ParallelStream;
+import io.github.bckfnn.reactstreams.Proc1;
+import io.github.bckfnn.reactstreams.SpscArrayQueue;
+import io.github.bckfnn.reactstreams.Stream;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Parallel rails operations.
+ * <p>
+ * The input elements are distributed to the rails either round-robin or by the hash of a key. Each rail 
+ * has a bounded single-producer / single-consumer input queue and a task that run the rail operations on 
+ * the executor. The operations on a rail are composed into a single step function, like {@link Transforms.Fused}, 
+ * and a new step is created for each rail so operations with state (accumulate) are kept per rail.
+ * <p>
+ * The input is requested <code>prefetch</code> elements per rail ahead. With round-robin distribution 
+ * the rails receive the elements in turn, so more is only requested when the slowest rail have consumed 
+ * its elements. This also means that the element with sequence number <code>k</code> is always on rail 
+ * <code>k % rails</code>, which is what {@link ParallelStream#ordered()} use to restore the order without 
+ * having to tag the elements.
+ */
+public class Parallel {
+    /**
+     * Marker returned from the step function for elements that is dropped by a filter.
+     */
+    static final Object SKIP = new Object();
+
+    /**
+     * The ParallelStream implementation. It only hold the configuration, the rails are created when 
+     * the joined stream is subscribed to.
+     *
+     * @param <T> type of the elements.
+     */
+    public static class Rails<T> implements ParallelStream<T> {
+        private final Publisher<?> source;
+        private final int rails;
+        private final Executor executor;
+        private final int prefetch;
+        private final Func1<Object, ?> key;
+        private final Func0<Func1<Object, Object>> step;
+
+        /**
+         * Constructor.
+         * @param source the input publisher.
+         * @param rails the number of rails.
+         * @param executor the executor that run the rails.
+         * @param prefetch the number of elements to request ahead for each rail.
+         * @param key a function that return the key that select the rail, or null for round-robin.
+         */
+        @SuppressWarnings("unchecked")
+        public Rails(Publisher<T> source, int rails, Executor executor, int prefetch, Func1<T, ?> key) {
+            this(source, rails, executor, prefetch, (Func1<Object, ?>) key, () -> value -> value);
+        }
+
+        private Rails(Publisher<?> source, int rails, Executor executor, int prefetch, Func1<Object, ?> key, 
+                Func0<Func1<Object, Object>> step) {
+            this.source = source;
+            this.rails = rails;
+            this.executor = executor;
+            this.prefetch = prefetch;
+            this.key = key;
+            this.step = step;
+        }
+
+        private <R> Rails<R> compose(Func1<Func1<Object, Object>, Func1<Object, Object>> func) {
+            Func0<Func1<Object, Object>> prev = step;
+            return new Rails<R>(source, rails, executor, prefetch, key, () -> func.apply(prev.apply()));
+        }
+
+        @Override
+        public int rails() {
+            return rails;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <R> ParallelStream<R> map(Func1<T, R> func) {
+            return compose(prev -> value -> {
+                Object result = prev.apply(value);
+                return result == SKIP ? SKIP : func.apply((T) result);
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public ParallelStream<T> filter(Func1<T, Boolean> func) {
+            return compose(prev -> value -> {
+                Object result = prev.apply(value);
+                return result == SKIP || !func.apply((T) result) ? SKIP : result;
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public ParallelStream<T> onEach(Proc1<T> func) {
+            return compose(prev -> value -> {
+                Object result = prev.apply(value);
+                if (result != SKIP) {
+                    func.apply((T) result);
+                }
+                return result;
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public ParallelStream<T> accumulate(T initial, Func2<T, T, T> func) {
+            return compose(prev -> {
+                Object[] acc = { initial };
+                return value -> {
+                    Object result = prev.apply(value);
+                    if (result == SKIP) {
+                        return SKIP;
+                    }
+                    acc[0] = acc[0] == null ? result : func.apply((T) acc[0], (T) result);
+                    return acc[0];
+                };
+            });
+        }
+
+        @Override
+        public Stream<T> sequential() {
+            return subscriber -> new Join<T>(this, false, subscriber).start();
+        }
+
+        @Override
+        public Stream<T> ordered() {
+            if (key != null) {
+                throw new IllegalStateException("ordered() is only possible with round-robin rails");
+            }
+            return subscriber -> new Join<T>(this, true, subscriber).start();
+        }
+
+        @Override
+        public <R> Stream<R> reduce(Func0<R> initial, Func2<R, T, R> accumulator, Func2<R, R, R> combiner) {
+            return subscriber -> new Reduce<T, R>(this, initial, accumulator, combiner, subscriber).start();
+        }
+    }
+
+    /**
+     * The running rails for a single subscriber. Subclasses decide what happens to the output of each rail.
+     */
+    abstract static class Engine implements Subscriber<Object> {
+        final Rails<?> config;
+        final Rail[] rails;
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        private final AtomicInteger requestWip = new AtomicInteger();
+        private final AtomicInteger finished = new AtomicInteger();
+        private volatile Subscription upstream;
+        private volatile boolean done = false;
+        private long requested = 0;
+        private int next = 0;
+
+        Engine(Rails<?> config) {
+            this.config = config;
+            this.rails = new Rail[config.rails];
+            int capacity = config.key == null ? config.prefetch 
+                    : (int) Math.min((long) config.prefetch * config.rails, SpscArrayQueue.MAX_CAPACITY);
+            for (int i = 0; i < rails.length; i++) {
+                rails[i] = new Rail(i, capacity);
+            }
+        }
+
+        /**
+         * Check if a rail can process another element.
+         * @param rail the rail.
+         * @return true if there is room for the output of the rail.
+         */
+        abstract boolean canAccept(Rail rail);
+
+        /**
+         * Handle the output of the step function on a rail.
+         * @param rail the rail.
+         * @param value the output, or SKIP.
+         * @exception Throwable when an exception occur.
+         */
+        abstract void accept(Rail rail, Object value) throws Throwable;
+
+        /**
+         * Emit to the subscriber, called when something have changed.
+         */
+        abstract void drain();
+
+        /**
+         * @return true when all the rails are finished.
+         */
+        boolean allFinished() {
+            return finished.get() == rails.length;
+        }
+
+        void start() {
+            config.source.subscribe(this);
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            upstream = s;
+            if (cancelled.get()) {
+                s.cancel();
+                return;
+            }
+            requestMore();
+        }
+
+        @Override
+        public void onNext(Object value) {
+            Rail rail;
+            if (config.key == null) {
+                rail = rails[next];
+                next = next + 1 == rails.length ? 0 : next + 1;
+            } else {
+                try {
+                    Object k = config.key.apply(value);
+                    rail = rails[Math.floorMod(k == null ? 0 : k.hashCode(), rails.length)];
+                } catch (Throwable t) {
+                    fail(t);
+                    return;
+                }
+            }
+            if (!rail.in.offer(value)) {
+                fail(new IllegalStateException("more elements received than requested"));
+                return;
+            }
+            rail.schedule();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            fail(t);
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            for (Rail rail : rails) {
+                rail.schedule();
+            }
+        }
+
+        void fail(Throwable t) {
+            if (error.compareAndSet(null, t)) {
+                stop();
+                drain();
+            }
+        }
+
+        void stop() {
+            if (cancelled.compareAndSet(false, true)) {
+                Subscription s = upstream;
+                if (s != null) {
+                    s.cancel();
+                }
+                for (Rail rail : rails) {
+                    rail.schedule();
+                }
+            }
+        }
+
+        /**
+         * Request more from the input when the rails have consumed enough. 
+         * The calls to request() are serialized by the work-in-progress counter.
+         */
+        void requestMore() {
+            if (requestWip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                Subscription s = upstream;
+                if (s != null && !cancelled.get()) {
+                    long allowed;
+                    if (config.key == null) {
+                        long min = Long.MAX_VALUE;
+                        for (Rail rail : rails) {
+                            min = Math.min(min, rail.consumed);
+                        }
+                        allowed = (min + config.prefetch) * rails.length;
+                    } else {
+                        long sum = 0;
+                        for (Rail rail : rails) {
+                            sum += rail.consumed;
+                        }
+                        allowed = sum + (long) config.prefetch * rails.length;
+                    }
+                    if (allowed > requested) {
+                        long n = allowed - requested;
+                        requested = allowed;
+                        s.request(n);
+                    }
+                }
+                missed = requestWip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * A single rail.
+         */
+        final class Rail implements Runnable {
+            final int index;
+            final SpscArrayQueue<Object> in;
+            final Func1<Object, Object> step;
+            final int limit;
+            private final AtomicInteger wip = new AtomicInteger();
+            volatile long consumed = 0;
+            volatile boolean finished = false;
+
+            Rail(int index, int capacity) {
+                this.index = index;
+                this.in = new SpscArrayQueue<>(capacity);
+                this.limit = Math.max(1, config.prefetch >> 2);
+                Func1<Object, Object> s;
+                try {
+                    s = config.step.apply();
+                } catch (Throwable t) {
+                    s = value -> {
+                        throw t;
+                    };
+                }
+                this.step = s;
+            }
+
+            void schedule() {
+                if (wip.getAndIncrement() == 0) {
+                    try {
+                        config.executor.execute(this);
+                    } catch (RejectedExecutionException exc) {
+                        // the rail can not run, so the stream can not make progress.
+                        fail(exc);
+                    }
+                }
+            }
+
+            @Override
+            public void run() {
+                int missed = 1;
+                for (;;) {
+                    long c = consumed;
+                    long last = c;
+                    for (;;) {
+                        if (cancelled.get()) {
+                            in.clear();
+                            break;
+                        }
+                        if (!canAccept(this)) {
+                            break;
+                        }
+                        boolean d = done;
+                        Object value = in.poll();
+                        if (value == null) {
+                            if (d && !finished) {
+                                finished = true;
+                                Engine.this.finished.incrementAndGet();
+                            }
+                            break;
+                        }
+                        try {
+                            accept(this, step.apply(value));
+                        } catch (Throwable t) {
+                            fail(t);
+                            break;
+                        }
+                        c++;
+                        consumed = c;
+                        if (c - last >= limit) {
+                            last = c;
+                            requestMore();
+                        }
+                    }
+                    if (c != last) {
+                        requestMore();
+                    }
+                    drain();
+                    missed = wip.addAndGet(-missed);
+                    if (missed == 0) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Join the rails into a single stream. Each rail put its output in a bounded output queue and
+     * the queues are drained to the subscriber, either in turn (ordered) or whenever they have elements.
+     *
+     * @param <T> type of the elements.
+     */
+    static class Join<T> extends Engine implements Subscription {
+        private final boolean ordered;
+        private final Subscriber<? super T> subscriber;
+        private final SpscArrayQueue<Object>[] out;
+        private final AtomicInteger[] outCount;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private int index = 0;
+
+        @SuppressWarnings("unchecked")
+        Join(Rails<T> config, boolean ordered, Subscriber<? super T> subscriber) {
+            super(config);
+            this.ordered = ordered;
+            this.subscriber = subscriber;
+            this.out = new SpscArrayQueue[rails.length];
+            this.outCount = new AtomicInteger[rails.length];
+            for (int i = 0; i < rails.length; i++) {
+                out[i] = new SpscArrayQueue<>(config.prefetch);
+                outCount[i] = new AtomicInteger();
+            }
+        }
+
+        @Override
+        void start() {
+            subscriber.onSubscribe(this);
+            super.start();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("spec 3.9"));
+                return;
+            }
+            demand.accumulateAndGet(n, BaseSubscription::addCap);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            stop();
+        }
+
+        @Override
+        boolean canAccept(Rail rail) {
+            return outCount[rail.index].get() < out[rail.index].capacity();
+        }
+
+        @Override
+        void accept(Rail rail, Object value) {
+            if (value == SKIP && !ordered) {
+                return;
+            }
+            out[rail.index].offer(value);
+            outCount[rail.index].incrementAndGet();
+        }
+
+        private Object poll(int i) {
+            Object value = out[i].poll();
+            if (value != null && outCount[i].getAndDecrement() == out[i].capacity()) {
+                // the rail was stopped by a full output queue.
+                rails[i].schedule();
+            }
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                long r = demand.get();
+                long e = 0;
+                for (;;) {
+                    if (cancelled.get() && error.get() == null) {
+                        return;
+                    }
+                    Throwable t = error.get();
+                    if (t != null) {
+                        subscriber.onError(t);
+                        return;
+                    }
+                    boolean finished = allFinished();
+                    boolean empty = true;
+                    if (ordered) {
+                        Object value = out[index].peek();
+                        if (value != null) {
+                            empty = false;
+                            if (value == SKIP) {
+                                poll(index);
+                                index = index + 1 == rails.length ? 0 : index + 1;
+                                continue;
+                            }
+                            if (e == r) {
+                                break;
+                            }
+                            poll(index);
+                            index = index + 1 == rails.length ? 0 : index + 1;
+                            subscriber.onNext((T) value);
+                            e++;
+                            continue;
+                        }
+                        if (!finished) {
+                            break;
+                        }
+                        for (int i = 0; i < rails.length; i++) {
+                            if (!out[i].isEmpty()) {
+                                empty = false;
+                            }
+                        }
+                    } else {
+                        for (int i = 0; i < rails.length && e != r; i++) {
+                            int k = (index + i) % rails.length;
+                            Object value = poll(k);
+                            if (value != null) {
+                                empty = false;
+                                subscriber.onNext((T) value);
+                                e++;
+                            }
+                        }
+                        index = index + 1 == rails.length ? 0 : index + 1;
+                        if (!empty) {
+                            continue;
+                        }
+                        for (int i = 0; i < rails.length; i++) {
+                            if (!out[i].isEmpty()) {
+                                empty = false;
+                            }
+                        }
+                        if (!empty) {
+                            break;
+                        }
+                    }
+                    if (finished && empty) {
+                        cancelled.set(true);
+                        subscriber.onComplete();
+                        return;
+                    }
+                    break;
+                }
+                if (e != 0 && r != Long.MAX_VALUE) {
+                    demand.addAndGet(-e);
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reduce each rail to a partial result and combine the partial results when all rails are finished.
+     *
+     * @param <T> type of the elements.
+     * @param <R> type of the result.
+     */
+    static class Reduce<T, R> extends Engine implements Subscription {
+        private final Func2<R, T, R> accumulator;
+        private final Func2<R, R, R> combiner;
+        private final Subscriber<? super R> subscriber;
+        private final Object[] partials;
+        private final AtomicBoolean requested = new AtomicBoolean();
+        private final AtomicBoolean emitted = new AtomicBoolean();
+
+        Reduce(Rails<T> config, Func0<R> initial, Func2<R, T, R> accumulator, Func2<R, R, R> combiner, 
+                Subscriber<? super R> subscriber) {
+            super(config);
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+            this.subscriber = subscriber;
+            this.partials = new Object[rails.length];
+            for (int i = 0; i < rails.length; i++) {
+                try {
+                    partials[i] = initial.apply();
+                } catch (Throwable t) {
+                    error.compareAndSet(null, t);
+                }
+            }
+        }
+
+        @Override
+        void start() {
+            subscriber.onSubscribe(this);
+            if (error.get() != null) {
+                cancelled.set(true);
+                drain();
+                return;
+            }
+            super.start();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("spec 3.9"));
+                return;
+            }
+            requested.set(true);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            stop();
+        }
+
+        @Override
+        boolean canAccept(Rail rail) {
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        void accept(Rail rail, Object value) throws Throwable {
+            if (value == SKIP) {
+                return;
+            }
+            partials[rail.index] = accumulator.apply((R) partials[rail.index], (T) value);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        void drain() {
+            Throwable t = error.get();
+            if (t != null) {
+                if (emitted.compareAndSet(false, true)) {
+                    subscriber.onError(t);
+                }
+                return;
+            }
+            if (!requested.get() || !allFinished() || !emitted.compareAndSet(false, true)) {
+                return;
+            }
+            R result = (R) partials[0];
+            try {
+                for (int i = 1; i < partials.length; i++) {
+                    result = combiner.apply(result, (R) partials[i]);
+                }
+            } catch (Throwable exc) {
+                subscriber.onError(exc);
+                return;
+            }
+            subscriber.onNext(result);
+            subscriber.onComplete();
+        }
+    }
+}
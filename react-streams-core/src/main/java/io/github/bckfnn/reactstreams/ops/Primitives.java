@@ -0,0 +1,1131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams.ops;
+
+import io.github.bckfnn.reactstreams.BaseSubscription;
+import io.github.bckfnn.reactstreams.DoubleFunc1;
+import io.github.bckfnn.reactstreams.DoubleFunc2;
+import io.github.bckfnn.reactstreams.DoublePred1;
+import io.github.bckfnn.reactstreams.DoubleStream;
+import io.github.bckfnn.reactstreams.DoubleSubscriber;
+import io.github.bckfnn.reactstreams.Func0;
+import io.github.bckfnn.reactstreams.LongFunc1;
+import io.github.bckfnn.reactstreams.LongFunc2;
+import io.github.bckfnn.reactstreams.LongPred1;
+import io.github.bckfnn.reactstreams.LongStream;
+import io.github.bckfnn.reactstreams.LongSubscriber;
+import io.github.bckfnn.reactstreams.Stream;
+import io.github.bckfnn.reactstreams.ToDoubleFunc1;
+import io.github.bckfnn.reactstreams.ToLongFunc1;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Sources and operations for the primitive {@link LongStream} and {@link DoubleStream}.
+ */
+public class Primitives {
+    /**
+     * Base class for the subscriptions of the primitive sources. The elements are emitted from a drain loop
+     * guarded by a work-in-progress counter, so request() can be called from any thread and from inside onNext.
+     */
+    abstract static class Source implements Subscription {
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile Throwable error;
+
+        /**
+         * @return true when there are more elements.
+         */
+        protected abstract boolean hasMore();
+
+        /**
+         * Emit the next element.
+         */
+        protected abstract void emitOne();
+
+        /**
+         * Signal onComplete to the subscriber.
+         */
+        protected abstract void sendComplete();
+
+        /**
+         * Signal onError to the subscriber.
+         * @param t the error.
+         */
+        protected abstract void sendError(Throwable t);
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("spec 3.9");
+            } else {
+                long r;
+                do {
+                    r = requested.get();
+                } while (!requested.compareAndSet(r, BaseSubscription.addCap(r, n)));
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                long r = requested.get();
+                long e = 0;
+                while (e != r) {
+                    if (cancelled) {
+                        return;
+                    }
+                    if (!hasMore()) {
+                        break;
+                    }
+                    emitOne();
+                    e++;
+                }
+                if (cancelled) {
+                    return;
+                }
+                if (error != null) {
+                    cancelled = true;
+                    sendError(error);
+                    return;
+                }
+                if (!hasMore()) {
+                    cancelled = true;
+                    sendComplete();
+                    return;
+                }
+                if (e != 0 && r != Long.MAX_VALUE) {
+                    requested.addAndGet(-e);
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The subscription that an aggregating operation give to its subscriber. All the elements are requested 
+     * from the input on the first request and the result is emitted when the input is complete.
+     */
+    static class Aggregation implements Subscription {
+        private final Subscriber<Object> subscriber;
+        private final AtomicBoolean requested = new AtomicBoolean();
+        Subscription input;
+        boolean done = false;
+
+        @SuppressWarnings("unchecked")
+        Aggregation(Subscriber<?> subscriber) {
+            this.subscriber = (Subscriber<Object>) subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                if (!done) {
+                    done = true;
+                    cancelInput();
+                    subscriber.onError(new IllegalArgumentException("spec 3.9"));
+                }
+                return;
+            }
+            if (requested.compareAndSet(false, true) && input != null) {
+                input.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            cancelInput();
+        }
+
+        private void cancelInput() {
+            if (input != null) {
+                input.cancel();
+            }
+        }
+
+        void fail(Throwable t) {
+            done = true;
+            cancelInput();
+            subscriber.onError(t);
+        }
+
+        void error(Throwable t) {
+            if (!done) {
+                done = true;
+                subscriber.onError(t);
+            }
+        }
+
+        void complete(Object result) {
+            if (!done) {
+                done = true;
+                if (result != null) {
+                    subscriber.onNext(result);
+                }
+                subscriber.onComplete();
+            }
+        }
+    }
+
+    /**
+     * Base class for the operators on a LongStream. The subscription from the input is passed on to the
+     * subscriber, so a chain of operators does not add any per-element overhead besides the function calls.
+     */
+    abstract static class LongOperator implements LongSubscriber {
+        protected final LongSubscriber subscriber;
+        protected Subscription subscription;
+        protected boolean done = false;
+        private volatile boolean unbounded = false;
+
+        LongOperator(LongSubscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    if (n == Long.MAX_VALUE) {
+                        unbounded = true;
+                    }
+                    s.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    s.cancel();
+                }
+            });
+        }
+
+        /**
+         * Request one element to replace an element that was dropped.
+         */
+        protected void replenish() {
+            if (!unbounded) {
+                subscription.request(1);
+            }
+        }
+
+        /**
+         * Cancel the input and send the error to the subscriber.
+         * @param t the error.
+         */
+        protected void fail(Throwable t) {
+            done = true;
+            subscription.cancel();
+            subscriber.onError(t);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (!done) {
+                done = true;
+                subscriber.onError(t);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (!done) {
+                done = true;
+                subscriber.onComplete();
+            }
+        }
+    }
+
+    /**
+     * Base class for the operators on a DoubleStream. The subscription from the input is passed on to the
+     * subscriber, so a chain of operators does not add any per-element overhead besides the function calls.
+     */
+    abstract static class DoubleOperator implements DoubleSubscriber {
+        protected final DoubleSubscriber subscriber;
+        protected Subscription subscription;
+        protected boolean done = false;
+        private volatile boolean unbounded = false;
+
+        DoubleOperator(DoubleSubscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    if (n == Long.MAX_VALUE) {
+                        unbounded = true;
+                    }
+                    s.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    s.cancel();
+                }
+            });
+        }
+
+        /**
+         * Request one element to replace an element that was dropped.
+         */
+        protected void replenish() {
+            if (!unbounded) {
+                subscription.request(1);
+            }
+        }
+
+        /**
+         * Cancel the input and send the error to the subscriber.
+         * @param t the error.
+         */
+        protected void fail(Throwable t) {
+            done = true;
+            subscription.cancel();
+            subscriber.onError(t);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (!done) {
+                done = true;
+                subscriber.onError(t);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (!done) {
+                done = true;
+                subscriber.onComplete();
+            }
+        }
+    }
+
+    /**
+     * An aggregation of the elements of a LongStream into a single result.
+     * @param <R> type of the result.
+     */
+    public interface LongAggregator<R> {
+        /**
+         * Called for each element.
+         * @param value the element.
+         * @exception Throwable when an exception occur.
+         */
+        void accept(long value) throws Throwable;
+
+        /**
+         * Called when all elements have been accepted.
+         * @return the result or null if there is no result.
+         */
+        R result();
+    }
+
+    /**
+     * A LongStream that emit the values from <code>start</code> (inclusive) to <code>end</code> (exclusive).
+     */
+    public static class LongRange implements LongStream {
+        private final long start;
+        private final long end;
+
+        /**
+         * Constructor.
+         * @param start the first value.
+         * @param end the end value.
+         */
+        public LongRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public void subscribe(LongSubscriber subscriber) {
+            subscriber.onSubscribe(new Source() {
+                long next = start;
+
+                @Override
+                protected boolean hasMore() {
+                    return next < end;
+                }
+
+                @Override
+                protected void emitOne() {
+                    subscriber.onNext(next++);
+                }
+
+                @Override
+                protected void sendComplete() {
+                    subscriber.onComplete();
+                }
+
+                @Override
+                protected void sendError(Throwable t) {
+                    subscriber.onError(t);
+                }
+            });
+        }
+    }
+
+    /**
+     * A LongStream that emit the values in an array.
+     */
+    public static class LongArray implements LongStream {
+        private final long[] values;
+
+        /**
+         * Constructor.
+         * @param values the values.
+         */
+        public LongArray(long[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public void subscribe(LongSubscriber subscriber) {
+            subscriber.onSubscribe(new Source() {
+                int index = 0;
+
+                @Override
+                protected boolean hasMore() {
+                    return index < values.length;
+                }
+
+                @Override
+                protected void emitOne() {
+                    subscriber.onNext(values[index++]);
+                }
+
+                @Override
+                protected void sendComplete() {
+                    subscriber.onComplete();
+                }
+
+                @Override
+                protected void sendError(Throwable t) {
+                    subscriber.onError(t);
+                }
+            });
+        }
+    }
+
+    /**
+     * A LongStream that map the elements from a publisher to long.
+     * @param <T> type of the publisher elements.
+     */
+    public static class MapToLong<T> implements LongStream {
+        private final Publisher<T> source;
+        private final ToLongFunc1<T> func;
+
+        /**
+         * Constructor.
+         * @param source the input publisher.
+         * @param func the function that map each element.
+         */
+        public MapToLong(Publisher<T> source, ToLongFunc1<T> func) {
+            this.source = source;
+            this.func = func;
+        }
+
+        @Override
+        public void subscribe(LongSubscriber subscriber) {
+            source.subscribe(new Subscriber<T>() {
+                Subscription subscription;
+                boolean done = false;
+
+                @Override
+                public void onSubscribe(Subscription s) {
+                    subscription = s;
+                    subscriber.onSubscribe(s);
+                }
+
+                @Override
+                public void onNext(T value) {
+                    if (done) {
+                        return;
+                    }
+                    long result;
+                    try {
+                        result = func.apply(value);
+                    } catch (Throwable t) {
+                        done = true;
+                        subscription.cancel();
+                        subscriber.onError(t);
+                        return;
+                    }
+                    subscriber.onNext(result);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    if (!done) {
+                        done = true;
+                        subscriber.onError(t);
+                    }
+                }
+
+                @Override
+                public void onComplete() {
+                    if (!done) {
+                        done = true;
+                        subscriber.onComplete();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Map operation on a LongStream.
+     */
+    public static class LongMap implements LongStream {
+        private final LongStream source;
+        private final LongFunc1 func;
+
+        /**
+         * Constructor.
+         * @param source the input stream.
+         * @param func the function that transform each value.
+         */
+        public LongMap(LongStream source, LongFunc1 func) {
+            this.source = source;
+            this.func = func;
+        }
+
+        @Override
+        public void subscribe(LongSubscriber subscriber) {
+            source.subscribe(new LongOperator(subscriber) {
+                @Override
+                public void onNext(long value) {
+                    if (done) {
+                        return;
+                    }
+                    long result;
+                    try {
+                        result = func.apply(value);
+                    } catch (Throwable t) {
+                        fail(t);
+                        return;
+                    }
+                    subscriber.onNext(result);
+                }
+            });
+        }
+    }
+
+    /**
+     * Filter operation on a LongStream. A dropped element is replaced by requesting one more from the 
+     * input, unless the demand is unbounded.
+     */
+    public static class LongFilter implements LongStream {
+        private final LongStream source;
+        private final LongPred1 func;
+
+        /**
+         * Constructor.
+         * @param source the input stream.
+         * @param func the predicate.
+         */
+        public LongFilter(LongStream source, LongPred1 func) {
+            this.source = source;
+            this.func = func;
+        }
+
+        @Override
+        public void subscribe(LongSubscriber subscriber) {
+            source.subscribe(new LongOperator(subscriber) {
+                @Override
+                public void onNext(long value) {
+                    if (done) {
+                        return;
+                    }
+                    boolean keep;
+                    try {
+                        keep = func.apply(value);
+                    } catch (Throwable t) {
+                        fail(t);
+                        return;
+                    }
+                    if (keep) {
+                        subscriber.onNext(value);
+                    } else {
+                        replenish();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Accumulate operation on a LongStream.
+     */
+    public static class LongAccumulate implements LongStream {
+        private final LongStream source;
+        private final long initial;
+        private final LongFunc2 func;
+
+        /**
+         * Constructor.
+         * @param source the input stream.
+         * @param initial the initial value.
+         * @param func the accumulate function.
+         */
+        public LongAccumulate(LongStream source, long initial, LongFunc2 func) {
+            this.source = source;
+            this.initial = initial;
+            this.func = func;
+        }
+
+        @Override
+        public void subscribe(LongSubscriber subscriber) {
+            source.subscribe(new LongOperator(subscriber) {
+                long acc = initial;
+
+                @Override
+                public void onNext(long value) {
+                    if (done) {
+                        return;
+                    }
+                    try {
+                        acc = func.apply(acc, value);
+                    } catch (Throwable t) {
+                        fail(t);
+                        return;
+                    }
+                    subscriber.onNext(acc);
+                }
+            });
+        }
+    }
+
+    /**
+     * Convert a LongStream to a DoubleStream.
+     */
+    public static class LongToDouble implements DoubleStream {
+        private final LongStream source;
+
+        /**
+         * Constructor.
+         * @param source the input stream.
+         */
+        public LongToDouble(LongStream source) {
+            this.source = source;
+        }
+
+        @Override
+        public void subscribe(DoubleSubscriber subscriber) {
+            source.subscribe(new LongSubscriber() {
+                @Override
+                public void onSubscribe(Subscription s) {
+                    subscriber.onSubscribe(s);
+                }
+
+                @Override
+                public void onNext(long value) {
+                    subscriber.onNext(value);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    subscriber.onError(t);
+                }
+
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                }
+            });
+        }
+    }
+
+    /**
+     * Convert a LongStream to a {@code Stream<Long>}.
+     */
+    public static class LongBoxed implements Stream<Long> {
+        private final LongStream source;
+
+        /**
+         * Constructor.
+         * @param source the input stream.
+         */
+        public LongBoxed(LongStream source) {
+            this.source = source;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super Long> subscriber) {
+            source.subscribe(new LongSubscriber() {
+                @Override
+                public void onSubscribe(Subscription s) {
+                    subscriber.onSubscribe(s);
+                }
+
+                @Override
+                public void onNext(long value) {
+                    subscriber.onNext(value);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    subscriber.onError(t);
+                }
+
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                }
+            });
+        }
+    }
+
+    /**
+     * Request all the elements from a LongStream and emit the result of a {@link LongAggregator}.
+     * A new aggregator is created for each subscriber.
+     * @param <R> type of the result.
+     */
+    public static class LongAggregate<R> implements Stream<R> {
+        private final LongStream source;
+        private final Func0<LongAggregator<R>> factory;
+
+        /**
+         * Constructor.
+         * @param source the input stream.
+         * @param factory creates the aggregator.
+         */
+        public LongAggregate(LongStream source, Func0<LongAggregator<R>> factory) {
+            this.source = source;
+            this.factory = factory;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super R> subscriber) {
+            LongAggregator<R> aggregator;
+            try {
+                aggregator = factory.apply();
+            } catch (Throwable t) {
+                subscriber.onSubscribe(new Aggregation(subscriber));
+                subscriber.onError(t);
+                return;
+            }
+            source.subscribe(new LongSubscriber() {
+                Aggregation aggregation;
+
+                @Override
+                public void onSubscribe(Subscription s) {
+                    aggregation = new Aggregation(subscriber);
+                    aggregation.input = s;
+                    subscriber.onSubscribe(aggregation);
+                }
+
+                @Override
+                public void onNext(long value) {
+                    if (aggregation.done) {
+                        return;
+                    }
+                    try {
+                        aggregator.accept(value);
+                    } catch (Throwable t) {
+                        aggregation.fail(t);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    aggregation.error(t);
+                }
+
+                @Override
+                public void onComplete() {
+                    aggregation.complete(aggregator.result());
+                }
+            });
+        }
+    }
+
+    /**
+     * An aggregation of the elements of a DoubleStream into a single result.
+     * @param <R> type of the result.
+     */
+    public interface DoubleAggregator<R> {
+        /**
+         * Called for each element.
+         * @param value the element.
+         * @exception Throwable when an exception occur.
+         */
+        void accept(double value) throws Throwable;
+
+        /**
+         * Called when all elements have been accepted.
+         * @return the result or null if there is no result.
+         */
+        R result();
+    }
+
+    /**
+     * A DoubleStream that emit the values in an array.
+     */
+    public static class DoubleArray implements DoubleStream {
+        private final double[] values;
+
+        /**
+         * Constructor.
+         * @param values the values.
+         */
+        public DoubleArray(double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public void subscribe(DoubleSubscriber subscriber) {
+            subscriber.onSubscribe(new Source() {
+                int index = 0;
+
+                @Override
+                protected boolean hasMore() {
+                    return index < values.length;
+                }
+
+                @Override
+                protected void emitOne() {
+                    subscriber.onNext(values[index++]);
+                }
+
+                @Override
+                protected void sendComplete() {
+                    subscriber.onComplete();
+                }
+
+                @Override
+                protected void sendError(Throwable t) {
+                    subscriber.onError(t);
+                }
+            });
+        }
+    }
+
+    /**
+     * A DoubleStream that map the elements from a publisher to double.
+     * @param <T> type of the publisher elements.
+     */
+    public static class MapToDouble<T> implements DoubleStream {
+        private final Publisher<T> source;
+        private final ToDoubleFunc1<T> func;
+
+        /**
+         * Constructor.
+         * @param source the input publisher.
+         * @param func the function that map each element.
+         */
+        public MapToDouble(Publisher<T> source, ToDoubleFunc1<T> func) {
+            this.source = source;
+            this.func = func;
+        }
+
+        @Override
+        public void subscribe(DoubleSubscriber subscriber) {
+            source.subscribe(new Subscriber<T>() {
+                Subscription subscription;
+                boolean done = false;
+
+                @Override
+                public void onSubscribe(Subscription s) {
+                    subscription = s;
+                    subscriber.onSubscribe(s);
+                }
+
+                @Override
+                public void onNext(T value) {
+                    if (done) {
+                        return;
+                    }
+                    double result;
+                    try {
+                        result = func.apply(value);
+                    } catch (Throwable t) {
+                        done = true;
+                        subscription.cancel();
+                        subscriber.onError(t);
+                        return;
+                    }
+                    subscriber.onNext(result);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    if (!done) {
+                        done = true;
+                        subscriber.onError(t);
+                    }
+                }
+
+                @Override
+                public void onComplete() {
+                    if (!done) {
+                        done = true;
+                        subscriber.onComplete();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Map operation on a DoubleStream.
+     */
+    public static class DoubleMap implements DoubleStream {
+        private final DoubleStream source;
+        private final DoubleFunc1 func;
+
+        /**
+         * Constructor.
+         * @param source the input stream.
+         * @param func the function that transform each value.
+         */
+        public DoubleMap(DoubleStream source, DoubleFunc1 func) {
+            this.source = source;
+            this.func = func;
+        }
+
+        @Override
+        public void subscribe(DoubleSubscriber subscriber) {
+            source.subscribe(new DoubleOperator(subscriber) {
+                @Override
+                public void onNext(double value) {
+                    if (done) {
+                        return;
+                    }
+                    double result;
+                    try {
+                        result = func.apply(value);
+                    } catch (Throwable t) {
+                        fail(t);
+                        return;
+                    }
+                    subscriber.onNext(result);
+                }
+            });
+        }
+    }
+
+    /**
+     * Filter operation on a DoubleStream. A dropped element is replaced by requesting one more from the 
+     * input, unless the demand is unbounded.
+     */
+    public static class DoubleFilter implements DoubleStream {
+        private final DoubleStream source;
+        private final DoublePred1 func;
+
+        /**
+         * Constructor.
+         * @param source the input stream.
+         * @param func the predicate.
+         */
+        public DoubleFilter(DoubleStream source, DoublePred1 func) {
+            this.source = source;
+            this.func = func;
+        }
+
+        @Override
+        public void subscribe(DoubleSubscriber subscriber) {
+            source.subscribe(new DoubleOperator(subscriber) {
+                @Override
+                public void onNext(double value) {
+                    if (done) {
+                        return;
+                    }
+                    boolean keep;
+                    try {
+                        keep = func.apply(value);
+                    } catch (Throwable t) {
+                        fail(t);
+                        return;
+                    }
+                    if (keep) {
+                        subscriber.onNext(value);
+                    } else {
+                        replenish();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Accumulate operation on a DoubleStream.
+     */
+    public static class DoubleAccumulate implements DoubleStream {
+        private final DoubleStream source;
+        private final double initial;
+        private final DoubleFunc2 func;
+
+        /**
+         * Constructor.
+         * @param source the input stream.
+         * @param initial the initial value.
+         * @param func the accumulate function.
+         */
+        public DoubleAccumulate(DoubleStream source, double initial, DoubleFunc2 func) {
+            this.source = source;
+            this.initial = initial;
+            this.func = func;
+        }
+
+        @Override
+        public void subscribe(DoubleSubscriber subscriber) {
+            source.subscribe(new DoubleOperator(subscriber) {
+                double acc = initial;
+
+                @Override
+                public void onNext(double value) {
+                    if (done) {
+                        return;
+                    }
+                    try {
+                        acc = func.apply(acc, value);
+                    } catch (Throwable t) {
+                        fail(t);
+                        return;
+                    }
+                    subscriber.onNext(acc);
+                }
+            });
+        }
+    }
+
+    /**
+     * Convert a DoubleStream to a {@code Stream<Double>}.
+     */
+    public static class DoubleBoxed implements Stream<Double> {
+        private final DoubleStream source;
+
+        /**
+         * Constructor.
+         * @param source the input stream.
+         */
+        public DoubleBoxed(DoubleStream source) {
+            this.source = source;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super Double> subscriber) {
+            source.subscribe(new DoubleSubscriber() {
+                @Override
+                public void onSubscribe(Subscription s) {
+                    subscriber.onSubscribe(s);
+                }
+
+                @Override
+                public void onNext(double value) {
+                    subscriber.onNext(value);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    subscriber.onError(t);
+                }
+
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                }
+            });
+        }
+    }
+
+    /**
+     * Request all the elements from a DoubleStream and emit the result of a {@link DoubleAggregator}.
+     * A new aggregator is created for each subscriber.
+     * @param <R> type of the result.
+     */
+    public static class DoubleAggregate<R> implements Stream<R> {
+        private final DoubleStream source;
+        private final Func0<DoubleAggregator<R>> factory;
+
+        /**
+         * Constructor.
+         * @param source the input stream.
+         * @param factory creates the aggregator.
+         */
+        public DoubleAggregate(DoubleStream source, Func0<DoubleAggregator<R>> factory) {
+            this.source = source;
+            this.factory = factory;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super R> subscriber) {
+            DoubleAggregator<R> aggregator;
+            try {
+                aggregator = factory.apply();
+            } catch (Throwable t) {
+                subscriber.onSubscribe(new Aggregation(subscriber));
+                subscriber.onError(t);
+                return;
+            }
+            source.subscribe(new DoubleSubscriber() {
+                Aggregation aggregation;
+
+                @Override
+                public void onSubscribe(Subscription s) {
+                    aggregation = new Aggregation(subscriber);
+                    aggregation.input = s;
+                    subscriber.onSubscribe(aggregation);
+                }
+
+                @Override
+                public void onNext(double value) {
+                    if (aggregation.done) {
+                        return;
+                    }
+                    try {
+                        aggregator.accept(value);
+                    } catch (Throwable t) {
+                        aggregation.fail(t);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    aggregation.error(t);
+                }
+
+                @Override
+                public void onComplete() {
+                    aggregation.complete(aggregator.result());
+                }
+            });
+        }
+    }
+}
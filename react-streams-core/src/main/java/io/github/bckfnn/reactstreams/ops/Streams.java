@@ -15,9 +15,17 @@ package io.github.bckfnn.reactstreams.ops;
 
 import io.github.bckfnn.reactstreams.ActiveSubscription;
 import io.github.bckfnn.reactstreams.BaseSubscription;
+import io.github.bckfnn.reactstreams.Scalar;
 import io.github.bckfnn.reactstreams.Stream;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
 
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
@@ -43,6 +51,16 @@ public class Streams {
             this.array = array;
         }
 
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.ORDERED;
+        }
+
+        @Override
+        public long estimateSize() {
+            return array.length;
+        }
+
         @Override
         public void subscribe(final Subscriber<? super T> subscriber) {
             subscriber.onSubscribe(new ActiveSubscription<T>(subscriber) {
@@ -57,6 +75,15 @@ public class Streams {
                 public T getOne() {
                     return array[idx++];
                 }
+
+                @Override
+                protected long emitSlice(long max) {
+                    int from = idx;
+                    int n = (int) Math.min(max, array.length - from);
+                    idx += n;
+                    emitBatch(array, from, n);
+                    return n;
+                }
             });
         }
     }
@@ -66,7 +93,7 @@ public class Streams {
      * 
      * @param <T> the type of output elements.
      */
-    public static class Error<T> implements Stream<T> {
+    public static class Error<T> implements Stream<T>, Scalar<T> {
         private Throwable exc;
         boolean finished;
 
@@ -78,6 +105,11 @@ public class Streams {
             this.exc = exc;
         }
 
+        @Override
+        public T get() throws Throwable {
+            throw exc;
+        }
+
         @Override
         public void subscribe(final Subscriber<? super T> subscriber) {
             subscriber.onSubscribe(new BaseSubscription<T>(subscriber) {
@@ -98,6 +130,7 @@ public class Streams {
      */
     public static class Iter<T> implements Stream<T> {
         private Iterator<T> iterator;
+        private Iterable<T> iterable;
 
         /**
          * Constructor.
@@ -107,8 +140,37 @@ public class Streams {
             this.iterator = iterator;
         }
 
+        /**
+         * Constructor for a stream that can be subscribed to more than once, each subscriber get its own iterator.
+         * @param iterable the iterable.
+         */
+        public Iter(Iterable<T> iterable) {
+            this.iterable = iterable;
+        }
+
+        @Override
+        public int characteristics() {
+            int c = 0;
+            if (iterable instanceof Collection) {
+                c |= Spliterator.SIZED;
+            }
+            if (iterable == null || iterable instanceof List) {
+                c |= Spliterator.ORDERED;
+            }
+            if (iterable instanceof Set) {
+                c |= Spliterator.DISTINCT;
+            }
+            return c;
+        }
+
+        @Override
+        public long estimateSize() {
+            return iterable instanceof Collection ? ((Collection<T>) iterable).size() : Long.MAX_VALUE;
+        }
+
         @Override
         public void subscribe(final Subscriber<? super T> subscriber) {
+            final Iterator<T> iterator = iterable != null ? iterable.iterator() : this.iterator;
             subscriber.onSubscribe(new ActiveSubscription<T>(subscriber) {
                 @Override
                 public boolean hasMore() {
@@ -123,15 +185,104 @@ public class Streams {
         }
     }
 
+    /**
+     * <code>Split</code> emit the elements from a {@link Spliterator}. The elements are pulled with 
+     * <code>tryAdvance()</code> from the drain loop of the subscription, so no more elements than requested 
+     * are taken from the spliterator, and batch subscribers receive them in demand-sized batches.
+     * <p>
+     * A spliterator can only be traversed once, so the stream can only be subscribed to once.
+     * 
+     * @param <T> type of the event.
+     */
+    public static class Split<T> implements Stream<T> {
+        private final Spliterator<T> spliterator;
+
+        /**
+         * Constructor.
+         * @param spliterator the spliterator.
+         */
+        public Split(Spliterator<T> spliterator) {
+            this.spliterator = spliterator;
+        }
+
+        /**
+         * Split a spliterator into up to <code>parts</code> spliterators with <code>trySplit()</code>. 
+         * The largest part is split first, and the parts are returned in encounter order.
+         * @param spliterator the spliterator to split.
+         * @param parts the maximum number of parts.
+         * @param <T> type of the elements.
+         * @return the list of parts.
+         */
+        public static <T> List<Spliterator<T>> split(Spliterator<T> spliterator, int parts) {
+            List<Spliterator<T>> list = new ArrayList<>();
+            Set<Spliterator<T>> unsplittable = Collections.newSetFromMap(new IdentityHashMap<>());
+            list.add(spliterator);
+            while (list.size() < parts) {
+                int largest = -1;
+                for (int i = 0; i < list.size(); i++) {
+                    Spliterator<T> s = list.get(i);
+                    if (!unsplittable.contains(s) && (largest < 0 || s.estimateSize() > list.get(largest).estimateSize())) {
+                        largest = i;
+                    }
+                }
+                if (largest < 0) {
+                    break;
+                }
+                Spliterator<T> prefix = list.get(largest).trySplit();
+                if (prefix == null) {
+                    unsplittable.add(list.get(largest));
+                } else {
+                    // trySplit return a prefix of the elements, so it go in front to keep the encounter order.
+                    list.add(largest, prefix);
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public int characteristics() {
+            return spliterator.characteristics() & (Spliterator.SIZED | Spliterator.ORDERED | Spliterator.DISTINCT);
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = spliterator.getExactSizeIfKnown();
+            return size < 0 ? Long.MAX_VALUE : size;
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super T> subscriber) {
+            subscriber.onSubscribe(new ActiveSubscription<T>(subscriber) {
+                private T next;
+                private boolean ready = false;
+
+                @Override
+                public boolean hasMore() {
+                    if (!ready) {
+                        ready = spliterator.tryAdvance(value -> next = value);
+                    }
+                    return ready;
+                }
+
+                @Override
+                public T getOne() {
+                    T value = next;
+                    next = null;
+                    ready = false;
+                    return value;
+                }
+            });
+        }
+    }
+
     /**
      * Value will generate a single onNext() event for the specified element, 
      * followed by an onComplete().
      * 
      * @param <T> type of the event.
      */
-    public static class Value<T> implements Stream<T>, Publisher<T> {
+    public static class Value<T> implements Stream<T>, Publisher<T>, Scalar<T> {
         private T value;
-        private boolean finished = false;
 
         /**
          * Constructor.
@@ -141,9 +292,26 @@ public class Streams {
             this.value = value;
         }
 
+        @Override
+        public T get() {
+            return value;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.ORDERED | Spliterator.DISTINCT;
+        }
+
+        @Override
+        public long estimateSize() {
+            return 1;
+        }
+
         @Override
         public void subscribe(final Subscriber<? super T> subscriber) {
             subscriber.onSubscribe(new BaseSubscription<T>(subscriber) {
+                private boolean finished = false;
+
                 @Override
                 public void request(long elements) {
                     if (!finished) {
@@ -170,6 +338,11 @@ public class Streams {
             this.start = start;
         }
 
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.DISTINCT;
+        }
+
         @Override
         public void subscribe(Subscriber<? super Integer> subscriber) {
             ActiveSubscription<Integer> s = new ActiveSubscription<Integer>(subscriber) {
@@ -193,7 +366,22 @@ public class Streams {
      * <code>Complete</code> emit onComplete event.
      * @param <T> type of the event.
      */
-    public static class Complete<T> implements Stream<T> {
+    public static class Complete<T> implements Stream<T>, Scalar<T> {
+        @Override
+        public T get() {
+            return null;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.ORDERED | Spliterator.DISTINCT;
+        }
+
+        @Override
+        public long estimateSize() {
+            return 0;
+        }
+
         @Override
         public void subscribe(Subscriber<? super T> subscriber) {
             BaseSubscription<T> s = new BaseSubscription<T>(subscriber) {
@@ -215,13 +403,18 @@ public class Streams {
     public static class Start<T> implements Subscriber<T> {
         private Subscription inputSubscription;
         private long elements;
+        private long limit;
+        private long consumed = 0;
         
         /**
-         * Constructor.
+         * Constructor. 
+         * The received elements are re-requested in a single request when 75% of the <code>elements</code>
+         * have been received.
          * @param elements the initially requested element count.
          */
         public Start(long elements) {
             this.elements = elements;
+            this.limit = Math.max(1, elements - (elements >> 2));
         }
         
         @Override
@@ -232,7 +425,13 @@ public class Streams {
 
         @Override
         public void onNext(T value) {
-            inputSubscription.request(1);
+            if (elements == Long.MAX_VALUE) {
+                return;
+            }
+            if (++consumed == limit) {
+                consumed = 0;
+                inputSubscription.request(limit);
+            }
         }
 
         @Override
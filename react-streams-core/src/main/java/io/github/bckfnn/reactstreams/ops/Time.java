@@ -0,0 +1,582 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams.ops;
+
+import io.github.bckfnn.reactstreams.BaseProcessor;
+import io.github.bckfnn.reactstreams.BaseSubscription;
+import io.github.bckfnn.reactstreams.Scheduler;
+import io.github.bckfnn.reactstreams.Stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Subscriber;
+
+/**
+ * Time based operations.
+ * <p>
+ * The timed events run as tasks on a {@link Scheduler}, so elements can be emitted from the scheduler thread.
+ * The operations that emit from both the input thread and the scheduler thread serialize the emission
+ * by synchronizing on the operation.
+ */
+public class Time {
+
+    /**
+     * <code>Interval</code> emit an increasing sequence number every <code>period</code>.
+     * A tick where the subscriber have no demand is dropped, the sequence number still count the ticks.
+     */
+    public static class Interval implements Stream<Long> {
+        private final long period;
+        private final Scheduler scheduler;
+
+        /**
+         * Constructor.
+         * @param period the time between the ticks.
+         * @param unit the unit of the period.
+         * @param scheduler the scheduler.
+         */
+        public Interval(long period, TimeUnit unit, Scheduler scheduler) {
+            this.period = unit.toNanos(period);
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.DISTINCT;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super Long> subscriber) {
+            IntervalSubscription s = new IntervalSubscription(subscriber);
+            subscriber.onSubscribe(s);
+            s.schedule();
+        }
+
+        /**
+         * The ticks are based on the start time, so the delays of the tasks does not add up.
+         */
+        private class IntervalSubscription extends BaseSubscription<Long> {
+            private final long start = scheduler.now(TimeUnit.NANOSECONDS);
+            private volatile Scheduler.Task task;
+            private long count = 0;
+
+            IntervalSubscription(Subscriber<? super Long> subscriber) {
+                super(subscriber);
+            }
+
+            void schedule() {
+                long next = start + (count + 1) * period;
+                task = scheduler.schedule(this::tick, next - scheduler.now(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+                if (isCancelled()) {
+                    task.cancel();
+                }
+            }
+
+            private void tick() {
+                if (isCancelled()) {
+                    return;
+                }
+                if (getPendingDemand() > 0) {
+                    sendNext(count);
+                }
+                count++;
+                schedule();
+            }
+
+            @Override
+            public void cancel() {
+                super.cancel();
+                Scheduler.Task t = task;
+                if (t != null) {
+                    t.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * <code>Timeout</code> fail with a {@link TimeoutException} and cancel the input when the time from
+     * the first request, or from the previous element, to the next element is longer than <code>timeout</code>.
+     *
+     * @param <T> type of the stream.
+     */
+    public static class Timeout<T> extends BaseProcessor<T, T> {
+        private static final long TERMINATED = Long.MIN_VALUE;
+        private final long timeout;
+        private final TimeUnit unit;
+        private final Scheduler scheduler;
+        /** the number of elements, or TERMINATED when the stream have ended. */
+        private final AtomicLong index = new AtomicLong();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private volatile Scheduler.Task task;
+
+        /**
+         * Constructor.
+         * @param timeout the maximum time between elements.
+         * @param unit the unit of the timeout.
+         * @param scheduler the scheduler.
+         */
+        public Timeout(long timeout, TimeUnit unit, Scheduler scheduler) {
+            this.timeout = timeout;
+            this.unit = unit;
+            this.scheduler = scheduler;
+        }
+
+        private void arm(long idx) {
+            task = scheduler.schedule(() -> {
+                if (index.compareAndSet(idx, TERMINATED)) {
+                    sendCancel();
+                    sendError(new TimeoutException("no element within " + timeout + " " + unit));
+                }
+            }, timeout, unit);
+        }
+
+        private void disarm() {
+            Scheduler.Task t = task;
+            if (t != null) {
+                t.cancel();
+            }
+        }
+
+        @Override
+        public void sendRequest(long n) {
+            if (started.compareAndSet(false, true)) {
+                arm(0);
+            }
+            super.sendRequest(n);
+        }
+
+        @Override
+        public void doNext(T value) {
+            long idx = index.get();
+            if (idx == TERMINATED || !index.compareAndSet(idx, idx + 1)) {
+                return;
+            }
+            disarm();
+            sendNext(value);
+            handled();
+            arm(idx + 1);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (index.getAndSet(TERMINATED) != TERMINATED) {
+                disarm();
+                super.onError(t);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (index.getAndSet(TERMINATED) != TERMINATED) {
+                disarm();
+                super.onComplete();
+            }
+        }
+
+        @Override
+        public void sendCancel() {
+            disarm();
+            super.sendCancel();
+        }
+    }
+
+    /**
+     * <code>Delay</code> emit each element, and the complete or error event, <code>delay</code> after it was received.
+     * The events are emitted from the scheduler, which run tasks with the same delay in order.
+     *
+     * @param <T> type of the stream.
+     */
+    public static class Delay<T> extends BaseProcessor<T, T> {
+        private final long delay;
+        private final TimeUnit unit;
+        private final Scheduler scheduler;
+
+        /**
+         * Constructor.
+         * @param delay the delay.
+         * @param unit the unit of the delay.
+         * @param scheduler the scheduler.
+         */
+        public Delay(long delay, TimeUnit unit, Scheduler scheduler) {
+            this.delay = delay;
+            this.unit = unit;
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public int characteristics() {
+            return getInputCharacteristics();
+        }
+
+        @Override
+        public long estimateSize() {
+            return getInputSize();
+        }
+
+        @Override
+        public void doNext(T value) {
+            scheduler.schedule(() -> sendNext(value), delay, unit);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            scheduler.schedule(() -> sendError(t), delay, unit);
+        }
+
+        @Override
+        public void onComplete() {
+            scheduler.schedule(this::sendComplete, delay, unit);
+        }
+    }
+
+    /**
+     * <code>Debounce</code> emit an element when no other element have been received for <code>time</code>.
+     * Elements that are followed by another element within the time are dropped.
+     * The last element is emitted right away when the input is complete.
+     *
+     * @param <T> type of the stream.
+     */
+    public static class Debounce<T> extends BaseProcessor<T, T> {
+        private final long time;
+        private final TimeUnit unit;
+        private final Scheduler scheduler;
+        private T latest;
+        private long index = 0;
+        private Scheduler.Task task;
+
+        /**
+         * Constructor.
+         * @param time the quiet time before an element is emitted.
+         * @param unit the unit of the time.
+         * @param scheduler the scheduler.
+         */
+        public Debounce(long time, TimeUnit unit, Scheduler scheduler) {
+            this.time = time;
+            this.unit = unit;
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void doNext(T value) {
+            boolean dropped;
+            synchronized (this) {
+                dropped = latest != null;
+                latest = value;
+                long idx = ++index;
+                if (task != null) {
+                    task.cancel();
+                }
+                task = scheduler.schedule(() -> emit(idx), time, unit);
+            }
+            if (dropped) {
+                sendRequest();
+            }
+        }
+
+        private synchronized void emit(long idx) {
+            if (idx == index && latest != null) {
+                T value = latest;
+                latest = null;
+                sendNext(value);
+            }
+        }
+
+        @Override
+        public synchronized void onError(Throwable t) {
+            if (task != null) {
+                task.cancel();
+            }
+            latest = null;
+            sendError(t);
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            if (task != null) {
+                task.cancel();
+            }
+            if (latest != null) {
+                sendNext(latest);
+                latest = null;
+            }
+            sendComplete();
+        }
+
+        @Override
+        public synchronized void sendCancel() {
+            if (task != null) {
+                task.cancel();
+            }
+            super.sendCancel();
+        }
+    }
+
+    /**
+     * <code>Sample</code> emit the latest received element every <code>period</code>, the other elements are dropped.
+     * Nothing is emitted in a period where no element is received. The latest element is emitted when the
+     * input is complete.
+     *
+     * @param <T> type of the stream.
+     */
+    public static class Sample<T> extends BaseProcessor<T, T> {
+        private final long period;
+        private final Scheduler scheduler;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private long start;
+        private long ticks = 0;
+        private T latest;
+        private boolean done = false;
+        private Scheduler.Task task;
+
+        /**
+         * Constructor.
+         * @param period the sample period.
+         * @param unit the unit of the period.
+         * @param scheduler the scheduler.
+         */
+        public Sample(long period, TimeUnit unit, Scheduler scheduler) {
+            this.period = unit.toNanos(period);
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void sendRequest(long n) {
+            if (started.compareAndSet(false, true)) {
+                synchronized (this) {
+                    start = scheduler.now(TimeUnit.NANOSECONDS);
+                    schedule();
+                }
+            }
+            super.sendRequest(n);
+        }
+
+        private void schedule() {
+            long next = start + ++ticks * period;
+            task = scheduler.schedule(this::tick, next - scheduler.now(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        }
+
+        private synchronized void tick() {
+            if (done) {
+                return;
+            }
+            if (latest != null) {
+                T value = latest;
+                latest = null;
+                sendNext(value);
+            }
+            schedule();
+        }
+
+        @Override
+        public void doNext(T value) {
+            boolean dropped;
+            synchronized (this) {
+                dropped = latest != null;
+                latest = value;
+            }
+            if (dropped) {
+                sendRequest();
+            }
+        }
+
+        @Override
+        public synchronized void onError(Throwable t) {
+            stop();
+            sendError(t);
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            stop();
+            if (latest != null) {
+                sendNext(latest);
+                latest = null;
+            }
+            sendComplete();
+        }
+
+        @Override
+        public synchronized void sendCancel() {
+            stop();
+            super.sendCancel();
+        }
+
+        private void stop() {
+            done = true;
+            if (task != null) {
+                task.cancel();
+            }
+        }
+    }
+
+    /**
+     * <code>ThrottleFirst</code> emit an element and then drop the following elements for <code>window</code>.
+     *
+     * @param <T> type of the stream.
+     */
+    public static class ThrottleFirst<T> extends BaseProcessor<T, T> {
+        private final long window;
+        private final Scheduler scheduler;
+        private long windowEnd;
+        private boolean first = true;
+
+        /**
+         * Constructor.
+         * @param window the time after an emitted element where elements are dropped.
+         * @param unit the unit of the window.
+         * @param scheduler the scheduler that provide the time.
+         */
+        public ThrottleFirst(long window, TimeUnit unit, Scheduler scheduler) {
+            this.window = unit.toNanos(window);
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void doNext(T value) {
+            long now = scheduler.now(TimeUnit.NANOSECONDS);
+            if (first || now - windowEnd >= 0) {
+                first = false;
+                windowEnd = now + window;
+                sendNext(value);
+            } else {
+                sendRequest();
+            }
+            handled();
+        }
+    }
+
+    /**
+     * <code>BufferTimeout</code> collect the elements in lists of up to <code>maxSize</code> elements.
+     * A list is emitted when it is full, or when <code>maxLatency</code> have passed since the first
+     * element in the list was received.
+     * For each requested list, <code>maxSize</code> elements are requested from the input.
+     * When there is no demand the elements are kept until the next request.
+     *
+     * @param <T> type of the stream.
+     */
+    public static class BufferTimeout<T> extends BaseProcessor<T, List<T>> {
+        private final int maxSize;
+        private final long maxLatency;
+        private final TimeUnit unit;
+        private final Scheduler scheduler;
+        private List<T> buffer = new ArrayList<>();
+        private long generation = 0;
+        private boolean expired = false;
+        private boolean done = false;
+        private Scheduler.Task task;
+
+        /**
+         * Constructor.
+         * @param maxSize the maximum number of elements in a list.
+         * @param maxLatency the maximum time an element is kept before its list is emitted.
+         * @param unit the unit of the latency.
+         * @param scheduler the scheduler.
+         */
+        public BufferTimeout(int maxSize, long maxLatency, TimeUnit unit, Scheduler scheduler) {
+            this.maxSize = maxSize;
+            this.maxLatency = maxLatency;
+            this.unit = unit;
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void sendRequest(long n) {
+            super.sendRequest(n >= Long.MAX_VALUE / maxSize ? Long.MAX_VALUE : n * maxSize);
+            drain();
+        }
+
+        @Override
+        public void doNext(T value) {
+            synchronized (this) {
+                buffer.add(value);
+                if (buffer.size() == 1) {
+                    arm();
+                }
+            }
+            drain();
+        }
+
+        private void arm() {
+            long gen = generation;
+            task = scheduler.schedule(() -> expire(gen), maxLatency, unit);
+        }
+
+        private void expire(long gen) {
+            synchronized (this) {
+                if (gen != generation) {
+                    return;
+                }
+                expired = true;
+            }
+            drain();
+        }
+
+        private synchronized void drain() {
+            while (!buffer.isEmpty() && (buffer.size() >= maxSize || expired || done) && getPendingDemand() > 0) {
+                List<T> list;
+                if (buffer.size() <= maxSize) {
+                    list = buffer;
+                    buffer = new ArrayList<>();
+                } else {
+                    List<T> head = buffer.subList(0, maxSize);
+                    list = new ArrayList<>(head);
+                    head.clear();
+                }
+                generation++;
+                expired = false;
+                if (task != null) {
+                    task.cancel();
+                }
+                if (!buffer.isEmpty()) {
+                    arm();
+                }
+                sendNext(list);
+            }
+            if (done && buffer.isEmpty()) {
+                sendComplete();
+            }
+        }
+
+        @Override
+        public synchronized void onError(Throwable t) {
+            if (task != null) {
+                task.cancel();
+            }
+            buffer.clear();
+            sendError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            synchronized (this) {
+                done = true;
+            }
+            drain();
+        }
+
+        @Override
+        public synchronized void sendCancel() {
+            if (task != null) {
+                task.cancel();
+            }
+            super.sendCancel();
+        }
+    }
+}
@@ -16,13 +16,30 @@ package io.github.bckfnn.reactstreams.ops;
 import io.github.bckfnn.reactstreams.BaseProcessor;
 import io.github.bckfnn.reactstreams.BaseSubscription;
 import io.github.bckfnn.reactstreams.Func1;
+import io.github.bckfnn.reactstreams.Proc1;
+import io.github.bckfnn.reactstreams.Scalar;
+import io.github.bckfnn.reactstreams.SpscArrayQueue;
 import io.github.bckfnn.reactstreams.Stream;
 import io.github.bckfnn.reactstreams.Tuple;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
@@ -33,31 +50,492 @@ import org.reactivestreams.Subscription;
  */
 public class Transforms {
     /**
-     * The map operation.
+     * A fused sequence of map, filter and onEach operations that run as a single processor.
+     * Each element is passed through a single step function that either return the output value or
+     * {@link #SKIP} when the element is filtered away.
+     * <p>
+     * The subscription to the input is deferred until the operation itself is subscribed to. 
+     * When map(), filter() or onEach() is called on a plain Map, Filter or OnEach operation before that, 
+     * a new operation is returned with the function composed onto a copy of the existing step, which take 
+     * over the input publisher. The existing operation is not changed and can still be subscribed to.
+     * <p>
+     * A batch of input elements is run through the step function in a single loop and emitted as one batch, 
+     * except when the step contains an onEach operation. The side effects of onEach are expected to happen 
+     * in step with the rest of the pipeline, so these elements are handled one by one.
+     *
      * @param <I> type of input values.
      * @param <O> type of output values.
      */
-    public static class Map<I, O> extends BaseProcessor<I, O> {
-        private Func1<I, O> func;
-        
+    public static class Fused<I, O> extends BaseProcessor<I, O> {
+        /**
+         * Marker returned from the step function for elements that is not emitted.
+         */
+        protected static final Object SKIP = new Object();
+
+        private final Func1<Object, Object> step;
+        /** the input publisher until the operation is subscribed to. */
+        private final AtomicReference<Publisher<? extends I>> source = new AtomicReference<>();
+        /** true when the step contains an onEach operation. */
+        private boolean sideEffects = false;
+        /** the input characteristics that is kept by the step. */
+        private int retained = ~0;
+
         /**
          * Constructor.
-         * @param func a function that map an input value to an output value.
+         * @param step the step function, return SKIP for elements that is dropped.
          */
-        public Map(Func1<I, O> func) {
-            this.func = func;
+        @SuppressWarnings("unchecked")
+        protected Fused(Func1<I, Object> step) {
+            this.step = (Func1<Object, Object>) step;
         }
-        
+
+        @SuppressWarnings("unchecked")
         @Override
         public void doNext(I value) {
             try {
-                sendNext(func.apply(value));
+                Object result = step.apply(value);
+                if (result == SKIP) {
+                    sendRequest();
+                } else {
+                    sendNext((O) result);
+                }
                 handled();
             } catch (Throwable error) {
                 sendError(error);
                 sendCancel();
             }
         }
+
+        /**
+         * Mark the step as having side effects, which disable batches.
+         */
+        protected void sideEffects() {
+            sideEffects = true;
+        }
+
+        /**
+         * Remove the input characteristics that the step does not keep.
+         * @param mask the characteristics that is kept.
+         */
+        protected void retain(int mask) {
+            retained &= mask;
+        }
+
+        @Override
+        public int characteristics() {
+            return getInputCharacteristics() & retained;
+        }
+
+        @Override
+        public long estimateSize() {
+            return getInputSize();
+        }
+
+        @Override
+        public void subscribeTo(Publisher<? extends I> input) {
+            source.set(input);
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super O> subscriber) {
+            super.subscribe(subscriber);
+            Publisher<? extends I> input = source.getAndSet(null);
+            if (input != null) {
+                input.subscribe(this);
+            }
+        }
+
+        @Override
+        public void doNextBatch(Object[] values, int offset, int length) {
+            if (sideEffects) {
+                super.doNextBatch(values, offset, length);
+                return;
+            }
+            Object[] out = new Object[length];
+            int n = 0;
+            for (int i = offset, end = offset + length; i < end; i++) {
+                Object result;
+                try {
+                    result = step.apply(values[i]);
+                } catch (Throwable error) {
+                    sendNextBatch(out, 0, n);
+                    sendError(error);
+                    sendCancel();
+                    return;
+                }
+                if (result == SKIP) {
+                    sendRequest();
+                } else {
+                    out[n++] = result;
+                }
+            }
+            sendNextBatch(out, 0, n);
+            handled(length);
+        }
+
+        private boolean canFuse() {
+            Class<?> c = getClass();
+            return !hasSubscriber() && source.get() != null 
+                    && (c == Fused.class || c == Map.class || c == Filters.Filter.class || c == Filters.OnEach.class);
+        }
+
+        /**
+         * Create a new operation with the <code>next</code> function composed onto the step of this operation. 
+         * The new operation take over the input publisher, this operation is not changed.
+         */
+        private <X> Fused<I, X> fuse(Func1<Object, Object> next, int mask, boolean effects) {
+            Func1<Object, Object> prev = step;
+            Fused<I, X> fused = new Fused<I, X>(value -> {
+                Object result = prev.apply(value);
+                return result == SKIP ? SKIP : next.apply(result);
+            });
+            fused.sideEffects = sideEffects || effects;
+            fused.retained = retained & mask;
+            fused.setInputCharacteristics(getInputCharacteristics(), getInputSize());
+            fused.source.set(source.get());
+            return fused;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <X> Stream<X> map(Func1<O, X> mapFunc) {
+            if (!canFuse()) {
+                return chain(new Map<O, X>(mapFunc));
+            }
+            return fuse(value -> mapFunc.apply((O) value), ~Spliterator.DISTINCT, false);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Stream<O> filter(Func1<O, Boolean> func) {
+            if (!canFuse()) {
+                return chain(new Filters.Filter<O>(func));
+            }
+            return fuse(value -> func.apply((O) value) ? value : SKIP, ~Spliterator.SIZED, false);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Stream<O> onEach(Proc1<O> func) {
+            if (!canFuse()) {
+                return chain(new Filters.OnEach<O>(func));
+            }
+            return fuse(value -> {
+                func.apply((O) value);
+                return value;
+            }, ~0, true);
+        }
+    }
+
+    /**
+     * The map operation.
+     * @param <I> type of input values.
+     * @param <O> type of output values.
+     */
+    public static class Map<I, O> extends Fused<I, O> {
+        /**
+         * Constructor.
+         * @param func a function that map an input value to an output value.
+         */
+        public Map(Func1<I, O> func) {
+            super(func::apply);
+            retain(~Spliterator.DISTINCT);
+        }
+    }
+
+    /**
+     * The mapParallel operation. The function is called for up to <code>parallelism</code> input values at 
+     * the same time on the <code>executor</code>, and the results are emitted in the same order as the input.
+     * <p>
+     * Each input value get a sequence number and its result is stored in a ring with <code>parallelism</code> 
+     * slots at the sequence number modulo the size of the ring. The results are emitted from the slot at the 
+     * head of the ring when they become ready, and the input is only requested for slots that are free, so 
+     * a slow call hold back the input instead of letting the ring grow.
+     *
+     * @param <I> type of input values.
+     * @param <O> type of output values.
+     */
+    public static class MapParallel<I, O> extends BaseProcessor<I, O> {
+        private final Func1<I, O> func;
+        private final Executor executor;
+        private final AtomicReferenceArray<O> ring;
+        private final int limit;
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        /** the number of received values, written by the input thread. */
+        private volatile long received = 0;
+        /** the number of emitted values, written by the drain loop. */
+        private long emitted = 0;
+        private int consumed = 0;
+        private volatile boolean done = false;
+        private Throwable inputError;
+
+        /**
+         * Constructor.
+         * @param func a function that map an input value to an output value.
+         * @param parallelism the maximum number of concurrent calls to the function.
+         * @param executor the executor that call the function.
+         */
+        public MapParallel(Func1<I, O> func, int parallelism, Executor executor) {
+            this.func = func;
+            this.executor = executor;
+            this.ring = new AtomicReferenceArray<O>(parallelism);
+            this.limit = Math.max(1, parallelism - (parallelism >> 2));
+        }
+
+        @Override
+        public void doNext(I value) {
+            long seq = received;
+            int slot = (int) (seq % ring.length());
+            received = seq + 1;
+            handled();
+            try {
+                executor.execute(() -> {
+                    O result;
+                    try {
+                        result = func.apply(value);
+                        if (result == null) {
+                            throw new NullPointerException("spec 2.13");
+                        }
+                    } catch (Throwable exc) {
+                        fail(exc);
+                        return;
+                    }
+                    ring.set(slot, result);
+                    drain();
+                });
+            } catch (RejectedExecutionException exc) {
+                // the slot is never filled, fail instead of waiting for it.
+                fail(exc);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            inputError = t;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void sendRequest(long n) {
+            if (started.compareAndSet(false, true)) {
+                super.sendRequest(ring.length());
+            }
+            drain();
+        }
+
+        private void fail(Throwable t) {
+            if (error.compareAndSet(null, t)) {
+                super.sendCancel();
+                drain();
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                if (isCancelled()) {
+                    return;
+                }
+                Throwable t = error.get();
+                if (t != null) {
+                    sendError(t);
+                    return;
+                }
+                while (getPendingDemand() > 0) {
+                    int slot = (int) (emitted % ring.length());
+                    O value = ring.get(slot);
+                    if (value == null) {
+                        break;
+                    }
+                    ring.lazySet(slot, null);
+                    emitted++;
+                    sendNext(value);
+                    if (++consumed == limit) {
+                        consumed = 0;
+                        super.sendRequest(limit);
+                    }
+                }
+                if (done && emitted == received) {
+                    if (inputError != null) {
+                        sendError(inputError);
+                    } else {
+                        sendComplete();
+                    }
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The mapAsync operation. The function return a {@link CompletionStage} for each input value and up to 
+     * <code>maxInFlight</code> of the stages are outstanding at the same time.
+     * <p>
+     * When <code>ordered</code> is true the results are stored in a ring with <code>maxInFlight</code> slots 
+     * indexed by the sequence number of the input value, and emitted from the head of the ring. Otherwise 
+     * the results are emitted in the order the stages complete. An input value is requested for each 
+     * emitted result, so exactly <code>maxInFlight</code> calls are outstanding as long as the output 
+     * demand keep up.
+     *
+     * @param <I> type of input values.
+     * @param <O> type of output values.
+     */
+    public static class MapAsync<I, O> extends BaseProcessor<I, O> {
+        private final Func1<I, ? extends CompletionStage<O>> func;
+        private final int maxInFlight;
+        private final AtomicReferenceArray<O> ring;
+        private final Queue<O> completed;
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        /** the number of received values, written by the input thread. */
+        private volatile long received = 0;
+        /** the number of emitted values, written by the drain loop. */
+        private long emitted = 0;
+        private volatile boolean done = false;
+        private Throwable inputError;
+
+        /**
+         * Constructor.
+         * @param func a function that map an input value to a stage that complete with the output value.
+         * @param maxInFlight the maximum number of outstanding stages.
+         * @param ordered true if the output values must be emitted in the same order as the input values.
+         */
+        public MapAsync(Func1<I, ? extends CompletionStage<O>> func, int maxInFlight, boolean ordered) {
+            this.func = func;
+            this.maxInFlight = maxInFlight;
+            this.ring = ordered ? new AtomicReferenceArray<O>(maxInFlight) : null;
+            this.completed = ordered ? null : new ConcurrentLinkedQueue<O>();
+        }
+
+        @Override
+        public void doNext(I value) {
+            long seq = received;
+            received = seq + 1;
+            handled();
+            CompletionStage<O> stage;
+            try {
+                stage = func.apply(value);
+                if (stage == null) {
+                    throw new NullPointerException("spec 2.13");
+                }
+            } catch (Throwable exc) {
+                fail(exc);
+                return;
+            }
+            stage.whenComplete((result, exc) -> {
+                if (exc != null) {
+                    fail(exc instanceof CompletionException && exc.getCause() != null ? exc.getCause() : exc);
+                } else if (result == null) {
+                    fail(new NullPointerException("spec 2.13"));
+                } else {
+                    if (ring != null) {
+                        ring.set((int) (seq % maxInFlight), result);
+                    } else {
+                        completed.offer(result);
+                    }
+                    drain();
+                }
+            });
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            inputError = t;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void sendRequest(long n) {
+            if (started.compareAndSet(false, true)) {
+                super.sendRequest(maxInFlight);
+            }
+            drain();
+        }
+
+        private void fail(Throwable t) {
+            if (error.compareAndSet(null, t)) {
+                super.sendCancel();
+                drain();
+            }
+        }
+
+        private O poll() {
+            if (ring == null) {
+                return completed.poll();
+            }
+            int slot = (int) (emitted % maxInFlight);
+            O value = ring.get(slot);
+            if (value != null) {
+                ring.lazySet(slot, null);
+            }
+            return value;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                if (isCancelled()) {
+                    return;
+                }
+                Throwable t = error.get();
+                if (t != null) {
+                    sendError(t);
+                    return;
+                }
+                long n = 0;
+                while (getPendingDemand() > 0) {
+                    O value = poll();
+                    if (value == null) {
+                        break;
+                    }
+                    emitted++;
+                    n++;
+                    sendNext(value);
+                }
+                if (done && emitted == received) {
+                    if (inputError != null) {
+                        sendError(inputError);
+                    } else {
+                        sendComplete();
+                    }
+                    return;
+                }
+                if (n > 0 && !done) {
+                    super.sendRequest(n);
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
     }
 
     /**
@@ -67,7 +545,7 @@ public class Transforms {
      * @param <O> type of output values.
      */
     public static class MapMany<I, O> extends BaseProcessor<I, O> {
-        private List<Publisher<O>> children = new ArrayList<Publisher<O>>();
+        private Deque<Publisher<O>> children = new ArrayDeque<Publisher<O>>();
         private boolean completed = false;
         private int count = 0;
         private Subscription childSubscription;
@@ -81,10 +559,21 @@ public class Transforms {
             this.func = func;
         }
         
+        @SuppressWarnings("unchecked")
         @Override
         public void doNext(I value) {
             try {
                 final Publisher<O> child = func.apply(value);
+                if (child instanceof Scalar && count == 0) {
+                    // the value is read directly, without subscribing to the child.
+                    O scalar = ((Scalar<O>) child).get();
+                    if (scalar != null) {
+                        sendNext(scalar);
+                    }
+                    sendRequest(1);
+                    handled();
+                    return;
+                }
                 children.add(child);
                 count++;
                 drain();
@@ -113,10 +602,10 @@ public class Transforms {
 
 
         private void drain() {
-            if (children.size() == 0) {
+            if (children.isEmpty()) {
                 return;
             }
-            final Publisher<O> child = children.remove(0);
+            final Publisher<O> child = children.poll();
             child.subscribe(new Subscriber<O>() {
 
                 @Override
@@ -158,7 +647,7 @@ public class Transforms {
      * @param <O> type of output values.
      */
     public static class MapManyWith<I, O> extends BaseProcessor<I, Tuple<I, O>> {
-        private List<Tuple<I, Publisher<O>>> children = new ArrayList<>();
+        private Deque<Tuple<I, Publisher<O>>> children = new ArrayDeque<>();
         private boolean completed = false;
         private int count = 0;
         private Subscription childSubscription;
@@ -204,10 +693,10 @@ public class Transforms {
 
 
         private void drain() {
-            if (children.size() == 0) {
+            if (children.isEmpty()) {
                 return;
             }
-            final Tuple<I, Publisher<O>> child = children.remove(0);
+            final Tuple<I, Publisher<O>> child = children.poll();
             child.right().subscribe(new Subscriber<O>() {
 
                 @Override
@@ -248,211 +737,878 @@ public class Transforms {
     }
 
     /**
-     * ToList operations. 
-     * @param <T> type of input values.
+     * Base class for the operations that map each input value to an inner publisher and subscribe to up to 
+     * <code>maxConcurrency</code> of the inner publishers at the same time. 
+     * <p>
+     * Each inner publisher is requested <code>prefetch</code> elements ahead and the elements are kept in 
+     * a single-producer / single-consumer queue per inner, until there is demand on the output. 
+     * The elements are emitted from a drain loop that is guarded by a work-in-progress counter, so the 
+     * inner publishers can emit on different threads. A new input value is requested each time an inner 
+     * publisher is complete.
+     *
+     * @param <I> type of input values.
+     * @param <O> type of output values.
      */
-    public static class ToList<T> extends BaseProcessor<T, List<T>> {
-        private List<T> list = new ArrayList<>();
+    abstract static class AbstractFlatMap<I, O> extends BaseProcessor<I, O> {
+        private final Func1<I, ? extends Publisher<O>> func;
+        private final int maxConcurrency;
+        private final int prefetch;
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        private volatile boolean done = false;
 
-        @Override
-        public void doNext(T value) {
-            list.add(value);
-            sendRequest();
-            handled();
+        AbstractFlatMap(Func1<I, ? extends Publisher<O>> func, int maxConcurrency, int prefetch) {
+            this.func = func;
+            this.maxConcurrency = maxConcurrency;
+            this.prefetch = prefetch;
         }
 
-        @Override
-        public void onComplete() {
-            sendNext(list);
-            sendComplete();
+        /**
+         * @return the maximum number of inner publishers that is subscribed to at the same time.
+         */
+        int getMaxConcurrency() {
+            return maxConcurrency;
         }
-    }
-
-    /**
-     * <code>Zip</code> combines two Stream by emitting a Tuple with an item from each stream.
-     *
-     * @param <T1> type of the first Stream
-     * @param <T2> type of the second Stream.
-     */
-    public static class Zip<T1, T2> implements Stream<Tuple<T1, T2>> {
-        Publisher<T1> o1;
-        Publisher<T2> o2;
-        Subscription i1;
-        Subscription i2;
-        List<T1> v1 = new LinkedList<T1>();
-        boolean v1stop = false;
-        List<T2> v2 = new LinkedList<T2>();
-        boolean v2stop = false;
 
         /**
-         * Constructor.
-         * @param o1 the first Stream.
-         * @param o2 the second Stream.
+         * Add a new inner subscriber, called before the inner publisher is subscribed to.
+         * @param inner the inner subscriber.
          */
-        public Zip(Publisher<T1> o1, Publisher<T2> o2) {
-            this.o1 = o1;
-            this.o2 = o2;
-        }
+        abstract void add(Inner inner);
 
-        @Override
-        public void subscribe(final Subscriber<? super Tuple<T1, T2>> subscriber) {
+        /**
+         * Emit the queued elements to the output demand.
+         * @return the number of inner subscribers that were completed and removed, or -1 if emitting must stop.
+         */
+        abstract int emit();
 
-            Subscriber<T1> s1 = new Subscriber<T1>() {
-                @Override
-                public void onSubscribe(Subscription s) {
-                    i1 = s;
-                }
+        /**
+         * @return true if there are no active inner subscribers.
+         */
+        abstract boolean isEmpty();
 
-                @Override
-                public void onNext(T1 t) {
-                    if (v2.size() > 0) {
-                        subscriber.onNext(new Tuple<T1, T2>(t, v2.remove(0)));
-                        //i2.request(1);
-                    } else if (v2stop) {
-                        subscriber.onComplete();
-                        i1.cancel();
-                    } else {
-                        v1.add(t);
-                    }
-                }
+        /**
+         * Cancel and remove all the inner subscribers.
+         */
+        abstract void cancelInners();
 
-                @Override
-                public void onError(Throwable t) {
-                    i2.cancel();
-                    subscriber.onError(t);
+        @SuppressWarnings("unchecked")
+        @Override
+        public void doNext(I value) {
+            Publisher<O> child;
+            try {
+                child = func.apply(value);
+            } catch (Throwable exc) {
+                handled();
+                failMapped(exc);
+                return;
+            }
+            if (child instanceof Scalar) {
+                // the value is read directly, without subscribing to the child.
+                O scalar;
+                try {
+                    scalar = ((Scalar<O>) child).get();
+                } catch (Throwable exc) {
+                    handled();
+                    failMapped(exc);
+                    return;
                 }
-
-                @Override
-                public void onComplete() {
-                    v1stop = true;
-                    if (v2stop || v1.size() == 0) {
-                        subscriber.onComplete();
-                    }
+                add(new Inner(scalar));
+                handled();
+                drain();
+                return;
+            }
+            Inner inner = new Inner(prefetch);
+            add(inner);
+            child.subscribe(inner);
+            handled();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            fail(t);
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void sendRequest(long n) {
+            if (started.compareAndSet(false, true)) {
+                super.sendRequest(maxConcurrency == UNBOUNDED ? Long.MAX_VALUE : maxConcurrency);
+            }
+            drain();
+        }
+
+        @Override
+        public void sendCancel() {
+            super.sendCancel();
+            drain();
+        }
+
+        void fail(Throwable t) {
+            if (error.compareAndSet(null, t)) {
+                done = true;
+                drain();
+            }
+        }
+
+        /**
+         * Handle an error from an inner publisher. The error is emitted at once, subclasses can override 
+         * this to emit it later.
+         * @param inner the inner subscriber.
+         * @param t the error.
+         */
+        void innerError(Inner inner, Throwable t) {
+            inner.done = true;
+            fail(t);
+        }
+
+        /**
+         * Handle an error from the mapping function or from a scalar inner publisher. No more input values 
+         * are requested, and the error is handled as the error of a new inner subscriber.
+         * @param t the error.
+         */
+        @SuppressWarnings("unchecked")
+        private void failMapped(Throwable t) {
+            super.sendCancel();
+            done = true;
+            Inner inner = new Inner((O) null);
+            add(inner);
+            innerError(inner, t);
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                if (isCancelled()) {
+                    cancelAll();
+                    return;
+                }
+                Throwable t = error.get();
+                if (t != null) {
+                    cancelAll();
+                    sendError(t);
+                    return;
+                }
+                boolean d = done;
+                int completed = emit();
+                if (completed < 0) {
+                    cancelAll();
+                    return;
+                }
+                if (d && isEmpty() && error.get() == null) {
+                    sendComplete();
+                    return;
                 }
-            };
-            o1.subscribe(s1);
+                if (completed > 0 && !d && maxConcurrency != UNBOUNDED && error.get() == null) {
+                    super.sendRequest(completed);
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
 
+        private void cancelAll() {
+            super.sendCancel();
+            cancelInners();
+        }
 
-            Subscriber<T2> s2 = new Subscriber<T2>() {
-                @Override
-                public void onSubscribe(Subscription s) {
-                    i2 = s;
+        /**
+         * Emit the queued elements from an inner subscriber while there is output demand.
+         * @param inner the inner subscriber.
+         * @return true if the inner is complete and all its elements have been emitted.
+         */
+        boolean emit(Inner inner) {
+            boolean innerDone = inner.done;
+            while (getPendingDemand() > 0) {
+                O value = inner.queue.poll();
+                if (value == null) {
+                    break;
                 }
+                sendNext(value);
+                inner.consumed();
+            }
+            return innerDone && inner.queue.isEmpty();
+        }
 
-                @Override
-                public void onNext(T2 t) {
-                    if (v1.size() > 0) {
-                        subscriber.onNext(new Tuple<T1, T2>(v1.remove(0), t));
-                        //i1.request(1);
-                    } else if (v1stop) {
-                        subscriber.onComplete();
-                        i2.cancel();
-                    } else {
-                        v2.add(t);
-                    }
+        /**
+         * The subscriber to an inner publisher.
+         */
+        class Inner implements Subscriber<O> {
+            final SpscArrayQueue<O> queue;
+            final int limit;
+            volatile Subscription subscription;
+            volatile boolean cancelled = false;
+            volatile boolean done = false;
+            /** The error from the inner publisher, set before <code>done</code>. */
+            volatile Throwable error;
+            int consumed = 0;
+
+            Inner(int prefetch) {
+                this.queue = new SpscArrayQueue<>(prefetch);
+                this.limit = prefetch - (prefetch >> 2);
+            }
+
+            /**
+             * Constructor for an inner that is already complete, with a single value or none.
+             * @param value the value or null.
+             */
+            Inner(O value) {
+                this.queue = new SpscArrayQueue<>(1);
+                this.limit = Integer.MAX_VALUE;
+                this.done = true;
+                if (value != null) {
+                    queue.offer(value);
                 }
+            }
 
-                @Override
-                public void onError(Throwable t) {
-                    i1.cancel();
-                    subscriber.onError(t);
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription = s;
+                if (cancelled) {
+                    s.cancel();
+                } else {
+                    s.request(prefetch);
                 }
+            }
 
-                @Override
-                public void onComplete() {
-                    v2stop = true;
-                    if (v1stop || v2.size() == 0) {
-                        subscriber.onComplete();
-                    }
+            @Override
+            public void onNext(O value) {
+                if (!queue.offer(value)) {
+                    subscription.cancel();
+                    onError(new IllegalStateException("more elements received than requested"));
+                    return;
                 }
-            };
-            o2.subscribe(s2);
+                drain();
+            }
 
-            subscriber.onSubscribe(new Subscription() {
-                @Override
-                public void request(long n) {
-                    if (!v1stop) {
-                        i1.request(n);
-                    }
-                    if (!v2stop) {
-                        i2.request(n);
-                    }
+            @Override
+            public void onError(Throwable t) {
+                innerError(this, t);
+            }
+
+            @Override
+            public void onComplete() {
+                done = true;
+                drain();
+            }
+
+            void consumed() {
+                if (++consumed == limit) {
+                    consumed = 0;
+                    subscription.request(limit);
                 }
+            }
 
-                @Override
-                public void cancel() {
-                    i1.cancel();
-                    i1.cancel();
+            void cancel() {
+                cancelled = true;
+                Subscription s = subscription;
+                if (s != null) {
+                    s.cancel();
                 }
-            });
+            }
+        }
+    }
+
+    /**
+     * The flatMap operation. Each input value is mapped to a publisher and up to <code>maxConcurrency</code> 
+     * of these inner publishers are subscribed to at the same time. The output of the inner publishers is 
+     * merged in the order it arrives.
+     *
+     * @param <I> type of input values.
+     * @param <O> type of output values.
+     */
+    public static class FlatMap<I, O> extends AbstractFlatMap<I, O> {
+        /**
+         * The default maximum number of concurrent inner subscriptions.
+         */
+        public static final int DEFAULT_CONCURRENCY = 16;
+
+        /**
+         * The default number of elements requested ahead from each inner publisher.
+         */
+        public static final int DEFAULT_PREFETCH = 32;
+
+        /** The inner subscribers that are added, but not yet moved to a slot by the drain loop. */
+        private final Queue<Inner> added = new ConcurrentLinkedQueue<>();
+        /** The slots of the active inner subscribers, only accessed from the drain loop. */
+        private Object[] inners;
+        /** The indexes of the empty slots below <code>size</code>. */
+        private int[] free;
+        private int freeCount = 0;
+        /** The number of slots in use, including the empty slots in <code>free</code>. */
+        private int size = 0;
+        private int index = 0;
+
+        /**
+         * Constructor.
+         * @param func a function that map an input value to a publisher of output values.
+         * @param maxConcurrency the maximum number of inner publishers that is subscribed to at the same time.
+         * @param prefetch the number of elements to request ahead from each inner publisher, must be bounded.
+         */
+        public FlatMap(Func1<I, ? extends Publisher<O>> func, int maxConcurrency, int prefetch) {
+            super(func, maxConcurrency, prefetch);
         }
 
+        @Override
+        void add(Inner inner) {
+            added.offer(inner);
+        }
+
+        @Override
+        int emit() {
+            transfer();
+            int completed = 0;
+            int n = size;
+            for (int i = 0; i < n; i++) {
+                int slot = (index + i) % n;
+                Inner inner = inner(slot);
+                if (inner == null) {
+                    continue;
+                }
+                boolean innerDone = emit(inner);
+                if (isCancelled()) {
+                    return -1;
+                }
+                if (innerDone) {
+                    inners[slot] = null;
+                    free[freeCount++] = slot;
+                    completed++;
+                }
+            }
+            if (n > 0) {
+                index = (index + 1) % n;
+            }
+            return completed;
+        }
+
+        /**
+         * Move the added inner subscribers to the empty slots, the array only grow when all the slots are in use.
+         */
+        private void transfer() {
+            Inner inner;
+            while ((inner = added.poll()) != null) {
+                if (freeCount > 0) {
+                    inners[free[--freeCount]] = inner;
+                    continue;
+                }
+                if (inners == null) {
+                    inners = new Object[Math.min(getMaxConcurrency(), DEFAULT_CONCURRENCY)];
+                    free = new int[inners.length];
+                } else if (size == inners.length) {
+                    int capacity = (int) Math.min((long) size * 2, getMaxConcurrency());
+                    inners = Arrays.copyOf(inners, Math.max(capacity, size + 1));
+                    free = new int[inners.length];
+                }
+                inners[size++] = inner;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Inner inner(int slot) {
+            return (Inner) inners[slot];
+        }
+
+        @Override
+        boolean isEmpty() {
+            return size == freeCount && added.isEmpty();
+        }
+
+        @Override
+        void cancelInners() {
+            transfer();
+            for (int i = 0; i < size; i++) {
+                Inner inner = inner(i);
+                if (inner != null) {
+                    inner.cancel();
+                    inners[i] = null;
+                }
+            }
+            size = 0;
+            freeCount = 0;
+        }
+
+        @Override
+        public String toString() {
+            return "FlatMap[]";
+        }
     }
 
     /**
-     * Concat operation.
-     * 
-     * @param <T> value type.
+     * The concatMapEager operation. Each input value is mapped to a publisher and up to 
+     * <code>maxConcurrency</code> of these inner publishers are subscribed to ahead of time. 
+     * The output of the inner publishers is buffered and emitted in the order of the input values, 
+     * so all the elements from one inner publisher are emitted before the elements of the next.
+     * <p>
+     * An error from an inner publisher is kept until all the elements before it are emitted, so an 
+     * inner publisher that fail early does not drop the buffered elements of the inners ahead of it.
+     *
+     * @param <I> type of input values.
+     * @param <O> type of output values.
      */
-    public static class Concat<T> implements Stream<T> {
-        private BaseSubscription<T> outputSubscription;
-        private List<Publisher<T>> list;
-        private int i = 0;
-        private Subscription currentInputSubscription;
+    public static class ConcatMapEager<I, O> extends AbstractFlatMap<I, O> {
+        private final Queue<Inner> inners = new ConcurrentLinkedQueue<>();
 
         /**
          * Constructor.
-         * @param list an array of publishers.
+         * @param func a function that map an input value to a publisher of output values.
+         * @param maxConcurrency the maximum number of inner publishers that is subscribed to at the same time.
+         * @param prefetch the number of elements to request ahead from each inner publisher, must be bounded.
          */
-        public Concat(Publisher<T>[] list) {
-            this(Arrays.asList(list));
+        public ConcatMapEager(Func1<I, ? extends Publisher<O>> func, int maxConcurrency, int prefetch) {
+            super(func, maxConcurrency, prefetch);
+        }
+
+        @Override
+        void add(Inner inner) {
+            inners.offer(inner);
+        }
+
+        @Override
+        void innerError(Inner inner, Throwable t) {
+            inner.error = t;
+            inner.done = true;
+            drain();
+        }
+
+        @Override
+        int emit() {
+            int completed = 0;
+            Inner inner;
+            while ((inner = inners.peek()) != null) {
+                boolean innerDone = emit(inner);
+                if (isCancelled()) {
+                    return -1;
+                }
+                if (!innerDone) {
+                    break;
+                }
+                inners.poll();
+                completed++;
+                if (inner.error != null) {
+                    // the inner has reached the head, all the elements before the error are emitted.
+                    fail(inner.error);
+                    break;
+                }
+            }
+            return completed;
+        }
+
+        @Override
+        boolean isEmpty() {
+            return inners.isEmpty();
+        }
+
+        @Override
+        void cancelInners() {
+            Inner inner;
+            while ((inner = inners.poll()) != null) {
+                inner.cancel();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "ConcatMapEager[]";
+        }
+    }
+
+    /**
+     * ToList operations. 
+     * @param <T> type of input values.
+     */
+    public static class ToList<T> extends BaseProcessor<T, List<T>> {
+        private List<T> list = new ArrayList<>();
+
+        /**
+         * Constructor.
+         */
+        public ToList() {
+            this(UNBOUNDED);
         }
 
         /**
          * Constructor.
-         * @param list a list of publishers.
+         * @param prefetch the number of elements to request from the input at a time.
          */
-        public Concat(List<Publisher<T>> list) {
-            this.list = list;
+        public ToList(int prefetch) {
+            setPrefetch(prefetch);
         }
 
         @Override
-        public void subscribe(Subscriber<? super T> s) {
-            list.get(i++).subscribe(new Sub());
-            s.onSubscribe(outputSubscription = new BaseSubscription<T>(s) {
-                @Override
-                public void request(long elements) {
-                    super.request(elements);
-                    currentInputSubscription.request(outputSubscription.getPendingDemand());
+        public void setInputCharacteristics(int characteristics, long size) {
+            super.setInputCharacteristics(characteristics, size);
+            if ((characteristics & Spliterator.SIZED) != 0 && size < Integer.MAX_VALUE - 8) {
+                // the exact size is known, allocate the list once.
+                list = new ArrayList<>((int) size);
+            }
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.ORDERED | Spliterator.DISTINCT;
+        }
+
+        @Override
+        public long estimateSize() {
+            return 1;
+        }
+
+        @Override
+        public void doNext(T value) {
+            list.add(value);
+            sendRequest();
+            handled();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void doNextBatch(Object[] values, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                list.add((T) values[i]);
+                sendRequest();
+            }
+            handled(length);
+        }
+
+        @Override
+        public void onComplete() {
+            sendNext(list);
+            sendComplete();
+        }
+    }
+
+    /**
+     * <code>ZipAll</code> combines any number of publishers by calling a combiner function with an array of one 
+     * element from each publisher and emitting the result.
+     * <p>
+     * Each publisher is requested <code>prefetch</code> elements ahead and its elements are kept in a fixed size
+     * single-producer / single-consumer queue. A publisher is requested more elements when 75% of its queue have 
+     * been consumed, so a fast publisher can never get further ahead than the size of its queue. The output 
+     * is complete as soon as one of the publishers is complete and all its elements have been combined. 
+     * An error from a publisher is likewise emitted after the elements it sent before the error.
+     *
+     * @param <R> type of the combined elements.
+     */
+    public static class ZipAll<R> implements Stream<R> {
+        /**
+         * The default number of elements that is requested ahead from each publisher.
+         */
+        public static final int DEFAULT_PREFETCH = 32;
+
+        private final Publisher<?>[] sources;
+        private final Func1<Object[], R> combiner;
+        private final int prefetch;
+
+        /**
+         * Constructor.
+         * @param sources the publishers to zip.
+         * @param combiner the function that combine an element from each publisher.
+         * @param prefetch the number of elements to request ahead from each publisher.
+         */
+        public ZipAll(Publisher<?>[] sources, Func1<Object[], R> combiner, int prefetch) {
+            this.sources = sources;
+            this.combiner = combiner;
+            this.prefetch = prefetch;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super R> subscriber) {
+            Coordinator c = new Coordinator(subscriber);
+            subscriber.onSubscribe(c);
+            for (int i = 0; i < sources.length && !c.cancelled; i++) {
+                sources[i].subscribe(c.inners[i]);
+            }
+        }
+
+        /**
+         * The subscription for a single subscriber, it holds the state of the zip.
+         */
+        private class Coordinator implements Subscription {
+            private final Subscriber<? super R> subscriber;
+            private final Inner[] inners;
+            private final AtomicLong requested = new AtomicLong();
+            private final AtomicInteger wip = new AtomicInteger();
+            private final AtomicReference<Throwable> error = new AtomicReference<>();
+            private volatile boolean cancelled = false;
+
+            @SuppressWarnings("unchecked")
+            Coordinator(Subscriber<? super R> subscriber) {
+                this.subscriber = subscriber;
+                this.inners = new ZipAll.Inner[sources.length];
+                for (int i = 0; i < inners.length; i++) {
+                    inners[i] = new Inner(this);
                 }
-            });
+            }
+
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("spec 3.9"));
+                    return;
+                }
+                requested.accumulateAndGet(n, BaseSubscription::addCap);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                if (!cancelled) {
+                    cancelled = true;
+                    cancelAll();
+                }
+            }
+
+            void fail(Throwable t) {
+                if (error.compareAndSet(null, t)) {
+                    drain();
+                }
+            }
+
+            private void cancelAll() {
+                for (Inner inner : inners) {
+                    inner.cancel();
+                }
+            }
+
+            /**
+             * @return true if the output is terminated.
+             */
+            private boolean checkTerminated() {
+                if (cancelled) {
+                    return true;
+                }
+                Throwable t = error.get();
+                if (t != null) {
+                    cancel();
+                    subscriber.onError(t);
+                    return true;
+                }
+                for (Inner inner : inners) {
+                    if (inner.done && inner.queue.isEmpty()) {
+                        cancel();
+                        if (inner.error != null) {
+                            subscriber.onError(inner.error);
+                        } else {
+                            subscriber.onComplete();
+                        }
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            void drain() {
+                if (wip.getAndIncrement() != 0) {
+                    return;
+                }
+                int missed = 1;
+                for (;;) {
+                    long r = requested.get();
+                    long e = 0;
+                    while (e != r) {
+                        if (checkTerminated()) {
+                            return;
+                        }
+                        boolean ready = true;
+                        for (Inner inner : inners) {
+                            if (inner.queue.isEmpty()) {
+                                ready = false;
+                                break;
+                            }
+                        }
+                        if (!ready) {
+                            break;
+                        }
+                        Object[] values = new Object[inners.length];
+                        for (int i = 0; i < inners.length; i++) {
+                            values[i] = inners[i].queue.poll();
+                            inners[i].consumed();
+                        }
+                        R value;
+                        try {
+                            value = combiner.apply(values);
+                        } catch (Throwable t) {
+                            cancel();
+                            subscriber.onError(t);
+                            return;
+                        }
+                        subscriber.onNext(value);
+                        e++;
+                    }
+                    if (checkTerminated()) {
+                        return;
+                    }
+                    if (e != 0 && r != Long.MAX_VALUE) {
+                        requested.addAndGet(-e);
+                    }
+                    missed = wip.addAndGet(-missed);
+                    if (missed == 0) {
+                        return;
+                    }
+                }
+            }
         }
 
-        private class Sub implements Subscriber<T> {
+        /**
+         * The subscriber to one of the publishers.
+         */
+        private class Inner implements Subscriber<Object> {
+            private final Coordinator coordinator;
+            final SpscArrayQueue<Object> queue = new SpscArrayQueue<>(prefetch);
+            final int limit = prefetch - (prefetch >> 2);
+            volatile Subscription subscription;
+            volatile boolean cancelled = false;
+            volatile boolean done = false;
+            Throwable error;
+            int consumed = 0;
+
+            Inner(Coordinator coordinator) {
+                this.coordinator = coordinator;
+            }
+
             @Override
             public void onSubscribe(Subscription s) {
-                currentInputSubscription = s;
+                subscription = s;
+                if (cancelled) {
+                    s.cancel();
+                } else {
+                    s.request(prefetch);
+                }
             }
 
             @Override
-            public void onNext(T t) {
-                outputSubscription.sendNext(t);
+            public void onNext(Object value) {
+                if (!queue.offer(value)) {
+                    subscription.cancel();
+                    onError(new IllegalStateException("more elements received than requested"));
+                    return;
+                }
+                coordinator.drain();
             }
 
             @Override
             public void onError(Throwable t) {
-                outputSubscription.sendError(t);
+                error = t;
+                done = true;
+                coordinator.drain();
             }
 
             @Override
             public void onComplete() {
-                if (i == list.size()) {
-                    outputSubscription.sendComplete();
-                } else {
-                    list.get(i++).subscribe(new Sub());
-                    currentInputSubscription.request(outputSubscription.getPendingDemand());
+                done = true;
+                coordinator.drain();
+            }
+
+            void consumed() {
+                if (++consumed == limit) {
+                    consumed = 0;
+                    subscription.request(limit);
                 }
             }
+
+            void cancel() {
+                cancelled = true;
+                Subscription s = subscription;
+                if (s != null) {
+                    s.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * <code>Zip</code> combines two Stream by emitting a Tuple with an item from each stream.
+     *
+     * @param <T1> type of the first Stream
+     * @param <T2> type of the second Stream.
+     */
+    public static class Zip<T1, T2> extends ZipAll<Tuple<T1, T2>> {
+        /**
+         * Constructor.
+         * @param o1 the first Stream.
+         * @param o2 the second Stream.
+         */
+        @SuppressWarnings("unchecked")
+        public Zip(Publisher<T1> o1, Publisher<T2> o2) {
+            super(new Publisher<?>[] { o1, o2 }, values -> new Tuple<T1, T2>((T1) values[0], (T2) values[1]), DEFAULT_PREFETCH);
+        }
+    }
+
+    /**
+     * Concat operation. The sources are taken one at a time from an Iterable, so the Iterable can be 
+     * unbounded. Up to <code>prefetchSources</code> sources are subscribed to ahead of the one that is
+     * emitting, and their first elements are buffered so the output switches to the next source without
+     * waiting for it. The sources are walked from the drain loop of a {@link ConcatMapEager}, so the 
+     * stack does not grow with the number of sources. An error from a source is emitted after all the 
+     * elements of the sources before it.
+     * 
+     * @param <T> value type.
+     */
+    public static class Concat<T> implements Stream<T> {
+        /**
+         * The default number of sources that are subscribed to at the same time.
+         */
+        public static final int DEFAULT_SOURCES = 2;
+
+        private final Iterable<? extends Publisher<T>> sources;
+        private final int prefetchSources;
+        private final int prefetch;
+
+        /**
+         * Constructor.
+         * @param list an array of publishers.
+         */
+        public Concat(Publisher<T>[] list) {
+            this(Arrays.asList(list));
+        }
+
+        /**
+         * Constructor.
+         * @param sources the publishers.
+         */
+        public Concat(Iterable<? extends Publisher<T>> sources) {
+            this(sources, DEFAULT_SOURCES, FlatMap.DEFAULT_PREFETCH);
+        }
+
+        /**
+         * Constructor.
+         * @param sources the publishers.
+         * @param prefetchSources the number of sources that are subscribed to at the same time.
+         * @param prefetch the number of elements to request ahead from each source.
+         */
+        public Concat(Iterable<? extends Publisher<T>> sources, int prefetchSources, int prefetch) {
+            this.sources = sources;
+            this.prefetchSources = prefetchSources;
+            this.prefetch = prefetch;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super T> s) {
+            Iterator<? extends Publisher<T>> iterator = sources.iterator();
+            new Streams.Iter<Publisher<T>>(new Iterator<Publisher<T>>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Publisher<T> next() {
+                    return iterator.next();
+                }
+            })
+            .chain(new ConcatMapEager<Publisher<T>, T>(source -> source, prefetchSources, prefetch))
+            .subscribe(s);
         }
     }
 
@@ -0,0 +1,936 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams.test;
+
+import io.github.bckfnn.reactstreams.ParallelStream;
+import io.github.bckfnn.reactstreams.Stream;
+import io.github.bckfnn.reactstreams.ops.Multicast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Stress tests where request() and cancel() is called from other threads than the one that emit elements.
+ */
+public class ConcurrencyTest {
+    private static final int COUNT = 2000000;
+
+    /**
+     * A subscriber that check that the elements arrive in sequence and that onNext is never called concurrently.
+     */
+    static class Checker implements Subscriber<Integer> {
+        final AtomicInteger inside = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Subscription subscription;
+        volatile int next;
+        volatile int completed;
+        volatile Throwable error;
+
+        Checker(int start) {
+            next = start;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+        }
+
+        @Override
+        public void onNext(Integer value) {
+            if (inside.getAndIncrement() != 0) {
+                error = new IllegalStateException("concurrent onNext");
+            }
+            if (value != next) {
+                error = new IllegalStateException("expected " + next + " got " + value);
+            }
+            next = next + 1;
+            inside.decrementAndGet();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed++;
+            done.countDown();
+        }
+    }
+
+    private static Integer[] values(int n) {
+        Integer[] values = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i;
+        }
+        return values;
+    }
+
+    private void requestFromThreads(Publisher<Integer> publisher, int threads) throws Exception {
+        Checker checker = new Checker(0);
+        publisher.subscribe(checker);
+
+        Thread[] requesters = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            requesters[t] = new Thread(() -> {
+                for (int i = 0; i < COUNT / threads; i++) {
+                    checker.subscription.request(1);
+                }
+            });
+        }
+        for (Thread t : requesters) {
+            t.start();
+        }
+        for (Thread t : requesters) {
+            t.join();
+        }
+        checker.subscription.request(1);
+
+        Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+        Assert.assertNull(checker.error);
+        Assert.assertEquals(checker.next, COUNT);
+        Assert.assertEquals(checker.completed, 1);
+    }
+
+    /**
+     * Request from several threads on an array source.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testArrayRequestFromThreads() throws Exception {
+        requestFromThreads(Stream.from(values(COUNT)), 4);
+    }
+
+    /**
+     * Request from several threads through a processor.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testProcessorRequestFromThreads() throws Exception {
+        requestFromThreads(Stream.counter().take(COUNT), 4);
+    }
+
+    /**
+     * Request from several threads on an iterator source.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testIterRequestFromThreads() throws Exception {
+        requestFromThreads(Stream.from(Arrays.asList(values(COUNT))), 4);
+    }
+
+    /**
+     * Request both from inside onNext and from another thread, the emitting must not recurse.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testReentrantRequest() throws Exception {
+        AtomicInteger depth = new AtomicInteger();
+        Checker checker = new Checker(0) {
+            @Override
+            public void onNext(Integer value) {
+                if (depth.incrementAndGet() > 1) {
+                    error = new IllegalStateException("recursive onNext");
+                }
+                super.onNext(value);
+                subscription.request(1);
+                depth.decrementAndGet();
+            }
+        };
+        Stream.counter().take(COUNT).subscribe(checker);
+        Thread other = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                checker.subscription.request(1);
+            }
+        });
+        other.start();
+        checker.subscription.request(1);
+        other.join();
+
+        Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+        Assert.assertNull(checker.error);
+        Assert.assertEquals(checker.next, COUNT);
+    }
+
+    /**
+     * Cancel from another thread while elements are emitted.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testCancelFromThread() throws Exception {
+        Checker checker = new Checker(0);
+        Stream.counter().map(x -> x).subscribe(checker);
+
+        Thread emitter = new Thread(() -> checker.subscription.request(Long.MAX_VALUE));
+        emitter.start();
+        while (checker.next < COUNT / 10) {
+            Thread.yield();
+        }
+        checker.subscription.cancel();
+        emitter.join(10000);
+
+        Assert.assertFalse(emitter.isAlive());
+        int received = checker.next;
+        checker.subscription.request(10);
+        Assert.assertEquals(checker.next, received);
+        Assert.assertNull(checker.error);
+        Assert.assertEquals(checker.completed, 0);
+    }
+
+    /**
+     * Emit elements on another thread with publishOn, requesting one at a time from onNext.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testPublishOn() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Checker checker = new Checker(0) {
+                @Override
+                public void onNext(Integer value) {
+                    super.onNext(value);
+                    subscription.request(1);
+                }
+            };
+            Stream.counter().take(COUNT).publishOn(executor, 64).subscribe(checker);
+            checker.subscription.request(1);
+
+            Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+            Assert.assertNull(checker.error);
+            Assert.assertEquals(checker.next, COUNT);
+            Assert.assertEquals(checker.completed, 1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Subscribe and request on another thread with subscribeOn, and emit on a third with publishOn.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testSubscribeOn() throws Exception {
+        ExecutorService subscribeExecutor = Executors.newSingleThreadExecutor();
+        ExecutorService publishExecutor = Executors.newSingleThreadExecutor();
+        try {
+            Thread caller = Thread.currentThread();
+            List<Thread> threads = new ArrayList<>();
+            Checker checker = new Checker(0);
+            Stream.from(values(COUNT / 10))
+            .onEach(x -> {
+                if (x == 0) {
+                    threads.add(Thread.currentThread());
+                }
+            })
+            .subscribeOn(subscribeExecutor)
+            .publishOn(publishExecutor)
+            .subscribe(checker);
+            while (checker.subscription == null) {
+                Thread.yield();
+            }
+            checker.subscription.request(Long.MAX_VALUE);
+
+            Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+            Assert.assertNull(checker.error);
+            Assert.assertEquals(checker.next, COUNT / 10);
+            Assert.assertTrue(threads.get(0) != caller);
+        } finally {
+            subscribeExecutor.shutdown();
+            publishExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Request from several threads through a subscribeOn on a thread pool, the input must still receive
+     * its requests serially.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testSubscribeOnPool() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            int count = COUNT / 10;
+            AtomicInteger inside = new AtomicInteger();
+            AtomicInteger overlaps = new AtomicInteger();
+            Stream<Integer> source = s -> Stream.from(values(count)).subscribe(new Subscriber<Integer>() {
+                @Override
+                public void onSubscribe(Subscription subscription) {
+                    s.onSubscribe(new Subscription() {
+                        @Override
+                        public void request(long n) {
+                            if (inside.getAndIncrement() != 0) {
+                                overlaps.incrementAndGet();
+                            }
+                            subscription.request(n);
+                            inside.decrementAndGet();
+                        }
+
+                        @Override
+                        public void cancel() {
+                            subscription.cancel();
+                        }
+                    });
+                }
+
+                @Override
+                public void onNext(Integer value) {
+                    s.onNext(value);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    s.onError(t);
+                }
+
+                @Override
+                public void onComplete() {
+                    s.onComplete();
+                }
+            });
+
+            Checker checker = new Checker(0);
+            source.subscribeOn(executor).subscribe(checker);
+            Thread[] requesters = new Thread[4];
+            for (int t = 0; t < requesters.length; t++) {
+                requesters[t] = new Thread(() -> {
+                    for (int i = 0; i < count / requesters.length; i++) {
+                        checker.subscription.request(1);
+                    }
+                });
+            }
+            for (Thread t : requesters) {
+                t.start();
+            }
+            for (Thread t : requesters) {
+                t.join();
+            }
+            checker.subscription.request(1);
+
+            Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+            Assert.assertNull(checker.error);
+            Assert.assertEquals(checker.next, count);
+            Assert.assertEquals(overlaps.get(), 0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Merge inner streams that emit on different threads with flatMap.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testFlatMapAsync() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            AtomicInteger inside = new AtomicInteger();
+            AtomicInteger count = new AtomicInteger();
+            Checker checker = new Checker(0) {
+                @Override
+                public void onNext(Integer value) {
+                    if (inside.getAndIncrement() != 0) {
+                        error = new IllegalStateException("concurrent onNext");
+                    }
+                    count.incrementAndGet();
+                    inside.decrementAndGet();
+                    subscription.request(1);
+                }
+            };
+            Stream.from(values(1000))
+            .flatMap(x -> Stream.from(values(100)).subscribeOn(executor), 8, 16)
+            .subscribe(checker);
+            checker.subscription.request(1);
+
+            Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+            Assert.assertNull(checker.error);
+            Assert.assertEquals(count.get(), 1000 * 100);
+            Assert.assertEquals(checker.completed, 1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Subscribe to inner streams ahead with concatMapEager, where the later streams finish first.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testConcatMapEagerOrder() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Checker checker = new Checker(0) {
+                @Override
+                public void onNext(Integer value) {
+                    super.onNext(value);
+                    subscription.request(1);
+                }
+            };
+            Stream.from(values(100))
+            .concatMapEager(x -> Stream.from(x * 10, x * 10 + 1, x * 10 + 2)
+                    .onEach(v -> Thread.sleep(x % 4 == 0 ? 2 : 0))
+                    .map(v -> v - x * 7)
+                    .subscribeOn(executor), 4)
+            .subscribe(checker);
+            checker.subscription.request(1);
+
+            Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+            Assert.assertNull(checker.error);
+            Assert.assertEquals(checker.next, 300);
+            Assert.assertEquals(checker.completed, 1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Map on parallel rails and join them in the original order.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testParallelOrdered() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Checker checker = new Checker(0) {
+                @Override
+                public void onNext(Integer value) {
+                    super.onNext(value);
+                    subscription.request(1);
+                }
+            };
+            Stream.from(values(COUNT / 10))
+            .parallel(4, executor)
+            .map(x -> x * 3)
+            .filter(x -> x % 2 == 0)
+            .map(x -> x / 6)
+            .ordered()
+            .subscribe(checker);
+            checker.subscription.request(1);
+
+            Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+            Assert.assertNull(checker.error);
+            Assert.assertEquals(checker.next, COUNT / 20);
+            Assert.assertEquals(checker.completed, 1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Join parallel rails as the elements are ready, and reduce parallel rails.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testParallelSequential() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            AtomicInteger inside = new AtomicInteger();
+            List<Long> sum = new CopyOnWriteArrayList<>();
+            Stream.from(values(COUNT / 10))
+            .parallel(4, executor)
+            .onEach(x -> {
+                if (x % 1000 == 0) {
+                    Thread.sleep(1);
+                }
+            })
+            .sequential()
+            .onEach(x -> {
+                if (inside.getAndIncrement() != 0) {
+                    throw new IllegalStateException("concurrent onNext");
+                }
+                inside.decrementAndGet();
+            })
+            .parallel(3, executor)
+            .reduce(() -> 0L, (s, x) -> s + x, (a, b) -> a + b)
+            .toList()
+            .onEach(sum::addAll)
+            .start(1);
+
+            long end = System.currentTimeMillis() + 10000;
+            while (sum.isEmpty() && System.currentTimeMillis() < end) {
+                Thread.sleep(1);
+            }
+            long n = COUNT / 10;
+            Assert.assertEquals(sum, Arrays.asList(n * (n - 1) / 2));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Distribute the elements by key, the elements with the same key are processed in order on the same rail.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testParallelKey() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<List<Integer>> result = new CopyOnWriteArrayList<>();
+            Stream.from(values(10000))
+            .parallel(4, executor, x -> x % 7)
+            .toList()
+            .onEach(result::add)
+            .start(1);
+
+            long end = System.currentTimeMillis() + 10000;
+            while (result.isEmpty() && System.currentTimeMillis() < end) {
+                Thread.sleep(1);
+            }
+            List<Integer> list = result.get(0);
+            Assert.assertEquals(list.size(), 10000);
+            int[] last = { -1, -1, -1, -1, -1, -1, -1 };
+            for (int x : list) {
+                Assert.assertTrue(x > last[x % 7]);
+                last[x % 7] = x;
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Map values concurrently with mapParallel, where the calls finish out of order.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testMapParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            AtomicInteger active = new AtomicInteger();
+            AtomicInteger maxActive = new AtomicInteger();
+            Checker checker = new Checker(0) {
+                @Override
+                public void onNext(Integer value) {
+                    super.onNext(value);
+                    subscription.request(1);
+                }
+            };
+            Stream.from(values(2000))
+            .mapParallel(x -> {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                if (x % 5 == 0) {
+                    Thread.sleep(1);
+                }
+                active.decrementAndGet();
+                return x;
+            }, 8, executor)
+            .subscribe(checker);
+            checker.subscription.request(1);
+
+            Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+            Assert.assertNull(checker.error);
+            Assert.assertEquals(checker.next, 2000);
+            Assert.assertEquals(checker.completed, 1);
+            Assert.assertTrue(maxActive.get() <= 8);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * An exception from the mapParallel function is emitted as an error and cancel the input.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testMapParallelError() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            AtomicInteger received = new AtomicInteger();
+            Checker checker = new Checker(0);
+            Stream.from(values(COUNT))
+            .onEach(x -> received.incrementAndGet())
+            .mapParallel(x -> {
+                if (x == 100) {
+                    throw new IllegalArgumentException("fail");
+                }
+                return x;
+            }, 16, executor)
+            .subscribe(checker);
+            checker.subscription.request(Long.MAX_VALUE);
+
+            Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+            Assert.assertTrue(checker.error instanceof IllegalArgumentException);
+            Assert.assertTrue(checker.next <= 100);
+            Assert.assertTrue(received.get() < 1000);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A parallel stream on an executor that reject the rails fail with the rejection.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testParallelRejected() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        executor.shutdown();
+        for (boolean ordered : new boolean[] { true, false }) {
+            Checker checker = new Checker(0);
+            ParallelStream<Integer> parallel = Stream.from(values(100)).parallel(4, executor).map(x -> x);
+            (ordered ? parallel.ordered() : parallel.sequential()).subscribe(checker);
+            checker.subscription.request(Long.MAX_VALUE);
+            Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+            Assert.assertTrue(checker.error instanceof RejectedExecutionException, String.valueOf(checker.error));
+        }
+    }
+
+    /**
+     * A publishOn or subscribeOn on an executor that reject the tasks fail with the rejection.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testAsyncRejected() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        executor.shutdown();
+        Checker publish = new Checker(0);
+        Stream.from(values(100)).publishOn(executor).subscribe(publish);
+        publish.subscription.request(Long.MAX_VALUE);
+        Assert.assertTrue(publish.done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(publish.error instanceof RejectedExecutionException, String.valueOf(publish.error));
+
+        Checker subscribe = new Checker(0);
+        Stream.from(values(100)).subscribeOn(executor).subscribe(subscribe);
+        subscribe.subscription.request(Long.MAX_VALUE);
+        Assert.assertTrue(subscribe.done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(subscribe.error instanceof RejectedExecutionException, String.valueOf(subscribe.error));
+    }
+
+    /**
+     * A mapParallel on an executor that reject the calls fail with the rejection.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testMapParallelRejected() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        executor.shutdown();
+        Checker checker = new Checker(0);
+        Stream.from(values(100)).mapParallel(x -> x, 16, executor).subscribe(checker);
+        checker.subscription.request(Long.MAX_VALUE);
+
+        Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(checker.error instanceof RejectedExecutionException, String.valueOf(checker.error));
+    }
+
+    /**
+     * Overlap many blocking calls with mapBlocking.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testMapBlocking() throws Exception {
+        Checker checker = new Checker(0) {
+            @Override
+            public void onNext(Integer value) {
+                super.onNext(value);
+                subscription.request(1);
+            }
+        };
+        long start = System.currentTimeMillis();
+        Stream.from(values(1000))
+        .mapBlocking(x -> {
+            Thread.sleep(20);
+            return x;
+        }, 200)
+        .subscribe(checker);
+        checker.subscription.request(1);
+
+        Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+        Assert.assertNull(checker.error);
+        Assert.assertEquals(checker.next, 1000);
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000 * 20 / 10);
+    }
+
+    /**
+     * A blocking generator is parked until there is demand, and stopped by cancel.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testGenerateBlocking() throws Exception {
+        AtomicInteger generated = new AtomicInteger();
+        CountDownLatch stopped = new CountDownLatch(1);
+        Checker checker = new Checker(0);
+        Stream.<Integer>generateBlocking(emitter -> {
+            try {
+                for (int i = 0; ; i++) {
+                    emitter.emit(i);
+                    generated.incrementAndGet();
+                }
+            } finally {
+                stopped.countDown();
+            }
+        })
+        .subscribe(checker);
+
+        Thread.sleep(50);
+        Assert.assertEquals(generated.get(), 0);
+        checker.subscription.request(COUNT / 10);
+        long end = System.currentTimeMillis() + 10000;
+        while (checker.next < COUNT / 10 && System.currentTimeMillis() < end) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(50);
+        Assert.assertEquals(checker.next, COUNT / 10);
+        Assert.assertEquals(generated.get(), COUNT / 10);
+
+        checker.subscription.cancel();
+        Assert.assertTrue(stopped.await(10, TimeUnit.SECONDS));
+        Assert.assertNull(checker.error);
+        Assert.assertEquals(checker.completed, 0);
+    }
+
+    /**
+     * A blocking generator complete when it return.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testGenerateBlockingComplete() throws Exception {
+        Checker checker = new Checker(0);
+        Stream.<Integer>generateBlocking(emitter -> {
+            for (int i = 0; i < 1000; i++) {
+                emitter.emit(i);
+            }
+        })
+        .subscribe(checker);
+        for (int i = 0; i < 1000; i++) {
+            checker.subscription.request(1);
+        }
+
+        Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+        Assert.assertNull(checker.error);
+        Assert.assertEquals(checker.next, 1000);
+        Assert.assertEquals(checker.completed, 1);
+    }
+
+    /**
+     * Multicast to several subscribers where one of them emit on another thread, 
+     * the input follow the slowest subscriber.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testMulticast() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Checker[] checkers = new Checker[3];
+            Stream<Integer> multicast = Stream.from(values(COUNT / 10)).multicast(64);
+            for (int i = 0; i < checkers.length; i++) {
+                checkers[i] = new Checker(0) {
+                    @Override
+                    public void onNext(Integer value) {
+                        super.onNext(value);
+                        subscription.request(1);
+                    }
+                };
+                if (i == 0) {
+                    multicast.publishOn(executor, 16).subscribe(checkers[i]);
+                } else {
+                    multicast.subscribe(checkers[i]);
+                }
+            }
+            for (Checker checker : checkers) {
+                checker.subscription.request(1);
+            }
+
+            for (Checker checker : checkers) {
+                Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+                Assert.assertNull(checker.error);
+                Assert.assertEquals(checker.next, COUNT / 10);
+                Assert.assertEquals(checker.completed, 1);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Multicast where a subscriber that fall behind lose the oldest elements.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testMulticastDropOldest() throws Exception {
+        Checker fast = new Checker(0);
+        Checker slow = new Checker(1000 - 16);
+        Stream<Integer> multicast = Stream.from(values(1000)).multicast(16, Multicast.Overflow.DROP_OLDEST);
+        multicast.subscribe(slow);
+        multicast.subscribe(fast);
+        fast.subscription.request(Long.MAX_VALUE);
+        Assert.assertTrue(fast.done.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(fast.next, 1000);
+        Assert.assertEquals(slow.next, 1000 - 16);
+
+        slow.subscription.request(Long.MAX_VALUE);
+        Assert.assertTrue(slow.done.await(1, TimeUnit.SECONDS));
+        Assert.assertNull(slow.error);
+        Assert.assertEquals(slow.next, 1000);
+        Assert.assertEquals(slow.completed, 1);
+    }
+
+    /**
+     * Subscribe to the same assembly from several threads at the same time.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testAssemblyFromThreads() throws Exception {
+        Stream<Integer> assembly = Stream.from(values(100))
+        .assemble()
+        .skip(10)
+        .map(x -> x - 10)
+        .take(50);
+
+        AtomicInteger failed = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    Checker checker = new Checker(0);
+                    assembly.subscribe(checker);
+                    checker.subscription.request(Long.MAX_VALUE);
+                    if (checker.error != null || checker.next != 50 || checker.completed != 1) {
+                        failed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        Assert.assertEquals(failed.get(), 0);
+    }
+
+    /**
+     * Accumulated demand above Long.MAX_VALUE is capped.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testDemandOverflow() throws Exception {
+        Checker checker = new Checker(0);
+        Stream.from(values(1000)).subscribe(checker);
+        checker.subscription.request(Long.MAX_VALUE - 1);
+        checker.subscription.request(Long.MAX_VALUE - 1);
+        Assert.assertTrue(checker.done.await(1, TimeUnit.SECONDS));
+        Assert.assertNull(checker.error);
+        Assert.assertEquals(checker.next, 1000);
+    }
+
+    /**
+     * A parallel java stream is split and read on several threads, and the elements are emitted in order.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testFromParallelJavaStream() throws Exception {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        Checker checker = new Checker(0);
+        Stream.fromJavaStream(IntStream.range(0, COUNT).boxed().parallel().peek(x -> threads.add(Thread.currentThread().getName())))
+        .subscribe(checker);
+        checker.subscription.request(Long.MAX_VALUE);
+        Assert.assertTrue(checker.done.await(10, TimeUnit.SECONDS));
+        Assert.assertNull(checker.error);
+        Assert.assertEquals(checker.next, COUNT);
+        Assert.assertTrue(threads.size() > 1 || ForkJoinPool.getCommonPoolParallelism() == 1, threads.toString());
+    }
+
+    /**
+     * A java stream pull the elements from a publisher that emit them on another thread.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testToJavaStream() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            long sum = Stream.from(values(COUNT)).publishOn(executor).toJavaStream(64).mapToLong(x -> x).sum();
+            Assert.assertEquals(sum, (long) COUNT * (COUNT - 1) / 2);
+
+            try (java.util.stream.Stream<Integer> s = Stream.counter().publishOn(executor).toJavaStream()) {
+                Assert.assertEquals(s.limit(5).collect(Collectors.toList()), Arrays.asList(0, 1, 2, 3, 4));
+            }
+
+            try {
+                Stream.from(1, 2, 3).map(x -> {
+                    if (x == 3) {
+                        throw new Exception("error");
+                    }
+                    return x;
+                }).publishOn(executor).toJavaStream().forEach(x -> { });
+                Assert.fail("expected an exception");
+            } catch (CompletionException e) {
+                Assert.assertEquals(e.getCause().getMessage(), "error");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The blocking terminals receive the elements from another thread.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testBlockingTerminals() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Assert.assertEquals(Stream.counter().publishOn(executor).blockFirst(), Integer.valueOf(0));
+            Assert.assertNull(Stream.<Integer>from().publishOn(executor).blockFirst());
+            Assert.assertEquals(Stream.from(values(COUNT)).publishOn(executor).blockLast(), Integer.valueOf(COUNT - 1));
+
+            long[] sum = { 0 };
+            Stream.from(values(COUNT)).publishOn(executor).forEach(64, x -> sum[0] += x);
+            Assert.assertEquals(sum[0], (long) COUNT * (COUNT - 1) / 2);
+
+            Iterable<Integer> iterable = Stream.from(values(1000)).assemble().publishOn(executor).toIterable(16);
+            for (int i = 0; i < 2; i++) {
+                int expected = 0;
+                for (Integer value : iterable) {
+                    Assert.assertEquals(value.intValue(), expected++);
+                }
+                Assert.assertEquals(expected, 1000);
+            }
+
+            try {
+                Stream.counter().publishOn(executor).forEach(x -> {
+                    if (x == 10) {
+                        throw new IllegalStateException("stop");
+                    }
+                });
+                Assert.fail("expected an exception");
+            } catch (IllegalStateException e) {
+                Assert.assertEquals(e.getMessage(), "stop");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
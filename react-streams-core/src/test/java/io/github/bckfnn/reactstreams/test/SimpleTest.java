@@ -13,18 +13,37 @@
  */
 package io.github.bckfnn.reactstreams.test;
 
+import io.github.bckfnn.reactstreams.BaseProcessor;
+import io.github.bckfnn.reactstreams.BaseSubscription;
+import io.github.bckfnn.reactstreams.DoubleStream;
 import io.github.bckfnn.reactstreams.Func1;
+import io.github.bckfnn.reactstreams.LongStream;
 import io.github.bckfnn.reactstreams.Pipe;
+import io.github.bckfnn.reactstreams.SpscArrayQueue;
 import io.github.bckfnn.reactstreams.Stream;
+import io.github.bckfnn.reactstreams.Trampoline;
 import io.github.bckfnn.reactstreams.Tuple;
+import io.github.bckfnn.reactstreams.ops.Filters;
+import io.github.bckfnn.reactstreams.ops.Multicast;
+import io.github.bckfnn.reactstreams.ops.Streams;
+import io.github.bckfnn.reactstreams.ops.Transforms;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Deque;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
@@ -359,7 +378,40 @@ public class SimpleTest {
         .chain(keep)
         .start(1);
 
-        keep.assertException(new Exception("xx"), new Tuple<>("a", 0), new Tuple<>("b", 1));
+        keep.assertException(new Exception("xx"), new Tuple<>("a", 0), new Tuple<>("b", 1), new Tuple<>("c", 2));
+    }
+
+    /**
+     * Test a zip operation with a combiner function.
+     */
+    @Test
+    public void testZip5() {
+        Keep<String> keep = new Keep<>();
+
+        Stream.zip(Stream.counter(), Stream.from("a", "b", "c"), (i, s) -> s + i)
+        .chain(keep)
+        .start(1);
+
+        keep.assertEquals("a0", "b1", "c2");
+    }
+
+    /**
+     * Test a zip operation on three publishers, where a source that complete ends the output.
+     */
+    @Test
+    public void testZip6() {
+        Keep<Integer> keep = new Keep<>();
+        RequestRecorder<Integer> recorder = new RequestRecorder<>();
+
+        Stream.zip(values -> (Integer) values[0] + (Integer) values[1] + (Integer) values[2], 
+                Stream.counter().chain(recorder), Stream.counter(10), Stream.from(100, 200, 300, 400))
+        .chain(keep)
+        .start(1);
+
+        keep.assertEquals(110, 212, 314, 416);
+        // the counter is never requested more than the prefetch ahead.
+        Assert.assertEquals(recorder.requests.get(0), Long.valueOf(Transforms.ZipAll.DEFAULT_PREFETCH));
+        Assert.assertEquals(recorder.requests.size(), 1);
     }
 
     /**
@@ -605,6 +657,51 @@ public class SimpleTest {
         keep.assertException(new Exception("xx"), "34");
     }
 
+    /**
+     * Test that consecutive map, filter and onEach operations are fused into one processor.
+     */
+    @Test
+    public void testFusion1() {
+        Keep<String> keep = new Keep<>();
+        List<Integer> seen = new ArrayList<>();
+        Stream<Integer> first = Stream.from(1, 2, 3, 4, 5, 6).map(x -> x * 10);
+        Stream<String> last = first
+        .filter(x -> x != 30)
+        .onEach(seen::add)
+        .map(x -> "v" + x)
+        .filter(x -> !x.equals("v50"));
+        // all the operations after the first map is fused into a single new stage.
+        Assert.assertNotSame(last, first);
+        Assert.assertSame(last.getClass(), Transforms.Fused.class);
+
+        last.chain(keep).start(1);
+        keep.assertEquals("v10", "v20", "v40", "v60");
+        Assert.assertEquals(seen, Arrays.asList(10, 20, 40, 50, 60));
+    }
+
+    /**
+     * Test that a fused stage is not extended once it have a subscriber, and that errors stop the fused stage.
+     */
+    @Test
+    public void testFusion2() {
+        Keep<Integer> keep = new Keep<>();
+        Stream<Integer> first = Stream.from(1, 2, 3).map(x -> x);
+        first.chain(new Keep<Integer>());
+        Assert.assertNotSame(first.map(x -> x), first);
+
+        Stream.from(1, 2, 3)
+        .map(x -> x * 2)
+        .map(x -> {
+            if (x == 4) {
+                throw new Exception("fused");
+            }
+            return x;
+        })
+        .chain(keep)
+        .start(1);
+        keep.assertException(new Exception("fused"), 2);
+    }
+
     /**
      * Test a last operation.
      */
@@ -774,6 +871,130 @@ public class SimpleTest {
         keep.assertEquals(1, 2, 3, 4, 5);
     }
 
+    /**
+     * Test that a failing source in a concat does not drop the buffered elements of the sources before it.
+     */
+    @Test
+    public void testConcatError() {
+        List<Integer> list = new ArrayList<>();
+        Throwable error = pull(Stream.concat(Stream.from(1, 2, 3), Stream.<Integer>error(new Exception("concat"))), list);
+        Assert.assertEquals(error.getMessage(), "concat");
+        Assert.assertEquals(list, Arrays.asList(1, 2, 3));
+
+        list.clear();
+        error = pull(Stream.concat(Stream.from(1, 2, 3), Stream.from(4).map(x -> {
+            if (x == 4) {
+                throw new RuntimeException("source");
+            }
+            return x;
+        })), list);
+        Assert.assertEquals(error.getMessage(), "source");
+        Assert.assertEquals(list, Arrays.asList(1, 2, 3));
+    }
+
+    /**
+     * Test a concat of many sources, which must not grow the stack.
+     */
+    @Test
+    public void testConcatMany() {
+        Keep<Integer> keep = new Keep<>();
+        List<Stream<Integer>> sources = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            sources.add(Stream.from(i));
+        }
+
+        Stream
+        .concat(sources)
+        .last()
+        .chain(keep)
+        .start(1);
+
+        keep.assertEquals(99999);
+    }
+
+    /**
+     * Test that trampoline operations keep the stack depth of a long pipeline bounded.
+     */
+    @Test
+    public void testTrampoline() {
+        Keep<Integer> keep = new Keep<>();
+        int[] depth = new int[1];
+
+        Integer[] values = new Integer[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        Stream<Integer> stream = Stream.from(values);
+        for (int i = 0; i < 2000; i++) {
+            stream = stream.nop();
+            if (i % 20 == 0) {
+                stream = stream.trampoline(16);
+            }
+        }
+        stream
+        .onEach(x -> depth[0] = Math.max(depth[0], new Throwable().getStackTrace().length))
+        .last()
+        .chain(keep)
+        .start(1);
+
+        keep.assertEquals(999);
+        Assert.assertTrue(depth[0] < 500, "depth " + depth[0]);
+    }
+
+    /**
+     * Test that a failing task on the trampoline does not drop the tasks queued after it.
+     */
+    @Test
+    public void testTrampolineError() {
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        List<Object> events = new ArrayList<>();
+        thread.setUncaughtExceptionHandler((t, e) -> events.add(e.getMessage()));
+        try {
+            Trampoline.INSTANCE.execute(() -> {
+                Trampoline.INSTANCE.execute(() -> {
+                    throw new RuntimeException("task");
+                });
+                Trampoline.INSTANCE.execute(() -> events.add(2));
+                events.add(1);
+            });
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+        Assert.assertEquals(events, Arrays.asList(1, "task", 2));
+        Assert.assertFalse(Trampoline.isActive());
+    }
+
+    /**
+     * Test a concat of an unbounded Iterable of sources.
+     */
+    @Test
+    public void testConcatUnbounded() {
+        Keep<Integer> keep = new Keep<>();
+        Iterable<Stream<Integer>> sources = () -> new java.util.Iterator<Stream<Integer>>() {
+            int n = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Stream<Integer> next() {
+                n++;
+                return Stream.from(n, -n);
+            }
+        };
+
+        Stream
+        .concat(sources)
+        .take(5)
+        .chain(keep)
+        .start(1);
+
+        keep.assertEquals(1, -1, 2, -2, 3);
+    }
+
 
 
 
@@ -1319,6 +1540,820 @@ public class SimpleTest {
         keep.assertEquals(Arrays.asList(1, 2, 3));
     }
 
+    /**
+     * A nop step that record the requests it send to its input.
+     */
+    static class RequestRecorder<T> extends Filters.Nop<T> {
+        List<Long> requests = new ArrayList<>();
+
+        @Override
+        public void sendRequest(long n) {
+            requests.add(n);
+            super.sendRequest(n);
+        }
+    }
+
+    /**
+     * Test that toList request its input in prefetch sized chunks.
+     */
+    @Test
+    public void testToListPrefetch() {
+        Keep<List<Integer>> keep = new Keep<>();
+        RequestRecorder<Integer> recorder = new RequestRecorder<>();
+        Integer[] values = new Integer[1000];
+        Arrays.fill(values, 1);
+
+        Stream
+        .from(values)
+        .chain(recorder)
+        .chain(new Transforms.ToList<Integer>(100))
+        .chain(keep)
+        .start(1);
+
+        Assert.assertEquals(keep.list.get(0).size(), 1000);
+        Assert.assertEquals(recorder.requests.get(0), Long.valueOf(100));
+        Assert.assertEquals(recorder.requests.get(1), Long.valueOf(75));
+        Assert.assertEquals(recorder.requests.size(), 14);
+    }
+
+    /**
+     * Test that toList and last request all their input at once.
+     */
+    @Test
+    public void testUnbounded() {
+        Keep<Integer> keep = new Keep<>();
+        RequestRecorder<Integer> recorder = new RequestRecorder<>();
+
+        Stream
+        .counter()
+        .take(5000000)
+        .chain(recorder)
+        .filter(x -> x % 2 == 0)
+        .last()
+        .chain(keep)
+        .start(1);
+
+        keep.assertEquals(4999998);
+        Assert.assertEquals(recorder.requests, Arrays.asList(Long.MAX_VALUE));
+    }
+
+    /**
+     * Test that the elements dropped by a filter is replaced in a single request.
+     */
+    @Test
+    public void testFilterReplenish() {
+        Keep<Integer> keep = new Keep<>();
+        RequestRecorder<Integer> recorder = new RequestRecorder<>();
+        Integer[] values = new Integer[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+
+        Stream
+        .from(values)
+        .chain(recorder)
+        .filter(x -> x % 10 == 0)
+        .chain(keep)
+        .start(20);
+
+        keep.assertEquals(0, 10, 20, 30, 40, 50, 60, 70, 80, 90);
+        // 90 dropped elements replaced in a few requests instead of one request each.
+        Assert.assertEquals(recorder.requests.get(0), Long.valueOf(20));
+        Assert.assertTrue(recorder.requests.size() < 10);
+    }
+
+    /**
+     * Test a primitive long pipeline.
+     */
+    @Test
+    public void testLongStream() {
+        Keep<Long> keep = new Keep<>();
+
+        LongStream
+        .range(0, 1000)
+        .filter(x -> x % 2 == 0)
+        .map(x -> x * 3)
+        .sum()
+        .chain(keep)
+        .start(1);
+
+        keep.assertEquals(748500L);
+    }
+
+    /**
+     * Test accumulate and boxed on a primitive long pipeline.
+     */
+    @Test
+    public void testLongAccumulate() {
+        Keep<Long> keep = new Keep<>();
+
+        LongStream
+        .of(1, 2, 3, 4)
+        .accumulate(0, (a, b) -> a + b)
+        .boxed()
+        .chain(keep)
+        .start(1);
+
+        keep.assertEquals(1L, 3L, 6L, 10L);
+
+        Keep<Long> take = new Keep<>();
+        LongStream.counter(1).filter(x -> x % 3 == 0).boxed().take(3).chain(take).start(1);
+        take.assertEquals(3L, 6L, 9L);
+    }
+
+    /**
+     * Test the aggregations on an empty and a non empty stream.
+     */
+    @Test
+    public void testLongAggregates() {
+        Keep<Long> min = new Keep<>();
+        LongStream.of(5, -2, 7).min().chain(min).start(1);
+        min.assertEquals(-2L);
+
+        Keep<Long> max = new Keep<>();
+        LongStream.range(0, 0).max().chain(max).start(1);
+        max.assertEquals();
+
+        Keep<Long> count = new Keep<>();
+        LongStream.range(10, 20).count().chain(count).start(1);
+        count.assertEquals(10L);
+    }
+
+    /**
+     * Test a histogram of a primitive long stream.
+     */
+    @Test
+    public void testLongHistogram() {
+        Keep<long[]> keep = new Keep<>();
+
+        LongStream
+        .range(0, 100)
+        .histogram(10, 50, 90)
+        .chain(keep)
+        .start(1);
+
+        keep.assertSuccess();
+        Assert.assertEquals(keep.list.get(0), new long[] { 10, 40, 40, 10 });
+    }
+
+    /**
+     * Test a primitive double pipeline created from a boxed stream.
+     */
+    @Test
+    public void testDoubleStream() {
+        Keep<Double> keep = new Keep<>();
+
+        Stream
+        .from(1, 2, 3, 4)
+        .mapToDouble(x -> x)
+        .map(x -> x / 2)
+        .average()
+        .chain(keep)
+        .start(1);
+
+        keep.assertEquals(1.25);
+
+        Keep<Long> count = new Keep<>();
+        DoubleStream
+        .of(0.1, 0.5, 0.9, 1.5)
+        .filter(x -> x < 1)
+        .count()
+        .chain(count)
+        .start(1);
+
+        count.assertEquals(3L);
+    }
+
+    /**
+     * A nop step that record the size of the batches it receive.
+     */
+    static class BatchRecorder<T> extends Filters.Nop<T> {
+        List<Integer> batches = new ArrayList<>();
+
+        @Override
+        public void doNextBatch(Object[] values, int offset, int length) {
+            batches.add(length);
+            sendNextBatch(values, offset, length);
+            handled(length);
+        }
+    }
+
+    /**
+     * Test that batches pass through map, filter, skip and take.
+     */
+    @Test
+    public void testBatch() {
+        Keep<List<Integer>> keep = new Keep<>();
+        BatchRecorder<Integer> recorder = new BatchRecorder<>();
+        Integer[] values = new Integer[1000];
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+            if (i * 2 % 3 == 0) {
+                expected.add(i * 2 + 1);
+            }
+        }
+
+        Stream
+        .from(values)
+        .map(x -> x * 2)
+        .filter(x -> x % 3 == 0)
+        .map(x -> x + 1)
+        .accumulate(null, (a, b) -> b)
+        .skip(5)
+        .take(100)
+        .chain(recorder)
+        .toList()
+        .chain(keep)
+        .start(1);
+
+        keep.assertSuccess();
+        Assert.assertEquals(keep.list.get(0), expected.subList(5, 105));
+        Assert.assertTrue(recorder.batches.size() < 10, "batches " + recorder.batches);
+    }
+
+    /**
+     * Test that batches follow the demand.
+     */
+    @Test
+    public void testBatchDemand() {
+        Keep<Integer> keep = new Keep<>();
+        BatchRecorder<Integer> recorder = new BatchRecorder<>();
+
+        Stream
+        .from(1, 2, 3, 4, 5)
+        .chain(recorder)
+        .chain(keep)
+        .start(2);
+
+        keep.assertEquals(1, 2, 3, 4, 5);
+        Assert.assertEquals(recorder.batches.get(0), Integer.valueOf(2));
+    }
+
+    /**
+     * Test flatMap with synchronous inner streams.
+     */
+    @Test
+    public void testFlatMap() {
+        Keep<Integer> keep = new Keep<>();
+        RequestRecorder<Integer> recorder = new RequestRecorder<>();
+
+        Stream
+        .from(1, 2, 3, 4)
+        .chain(recorder)
+        .flatMap(x -> Stream.from(x, x * 10), 2, 4)
+        .chain(keep)
+        .start(1);
+
+        keep.assertEquals(1, 10, 2, 20, 3, 30, 4, 40);
+        Assert.assertEquals(recorder.requests.get(0), Long.valueOf(2));
+    }
+
+    /**
+     * Test concatMapEager with synchronous inner streams.
+     */
+    @Test
+    public void testConcatMapEager() {
+        Keep<Integer> keep = new Keep<>();
+
+        Stream
+        .from(1, 2, 3)
+        .concatMapEager(x -> Stream.from(x, x * 10, x * 100), 2, 2)
+        .chain(keep)
+        .start(1);
+
+        keep.assertEquals(1, 10, 100, 2, 20, 200, 3, 30, 300);
+    }
+
+    /**
+     * Test that concatMapEager emit the elements before an inner error, when a later inner fail before
+     * the earlier inners are emitted.
+     */
+    @Test
+    public void testConcatMapEagerError() {
+        List<Integer> list = new ArrayList<>();
+        Throwable error = pull(Stream
+                .from(1, 2)
+                .concatMapEager(x -> x == 1 ? Stream.from(1, 10, 100) : Stream.from(2, 20).map(y -> {
+                    if (y == 20) {
+                        throw new RuntimeException("inner");
+                    }
+                    return y;
+                }), 2, 4), list);
+        Assert.assertEquals(error.getMessage(), "inner");
+        Assert.assertEquals(list, Arrays.asList(1, 10, 100, 2));
+
+        list.clear();
+        error = pull(Stream
+                .from(1, 2, 3)
+                .concatMapEager(x -> {
+                    if (x == 2) {
+                        throw new RuntimeException("mapper");
+                    }
+                    return Stream.from(x, x * 10);
+                }, 2, 4), list);
+        Assert.assertEquals(error.getMessage(), "mapper");
+        Assert.assertEquals(list, Arrays.asList(1, 10));
+    }
+
+    /**
+     * Pull the elements one at a time, so the output demand stay low while the later inners are subscribed.
+     * @param stream the stream.
+     * @param list the list that the elements are added to.
+     * @return the error that the stream failed with, or null.
+     */
+    private static <T> Throwable pull(Stream<T> stream, List<T> list) {
+        try {
+            for (T value : stream.toIterable(1)) {
+                list.add(value);
+            }
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause();
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Test mapAsync where the calls complete in reverse order.
+     */
+    @Test
+    public void testMapAsyncOrdered() {
+        Keep<Integer> keep = new Keep<>();
+        List<CompletableFuture<Integer>> calls = new ArrayList<>();
+
+        Stream
+        .from(1, 2, 3, 4, 5)
+        .mapAsync(x -> {
+            CompletableFuture<Integer> f = new CompletableFuture<>();
+            calls.add(f);
+            return f;
+        }, 3)
+        .chain(keep)
+        .start(1);
+
+        Assert.assertEquals(calls.size(), 3);
+        calls.get(2).complete(30);
+        calls.get(1).complete(20);
+        Assert.assertEquals(calls.size(), 3);
+        calls.get(0).complete(10);
+        Assert.assertEquals(calls.size(), 5);
+        calls.get(4).complete(50);
+        calls.get(3).complete(40);
+
+        keep.assertEquals(10, 20, 30, 40, 50);
+    }
+
+    /**
+     * Test mapAsync that emit the results as the calls complete.
+     */
+    @Test
+    public void testMapAsyncUnordered() {
+        Keep<Integer> keep = new Keep<>();
+        List<CompletableFuture<Integer>> calls = new ArrayList<>();
+
+        Stream
+        .from(1, 2, 3, 4, 5)
+        .mapAsync(x -> {
+            CompletableFuture<Integer> f = new CompletableFuture<>();
+            calls.add(f);
+            return f;
+        }, 3, false)
+        .chain(keep)
+        .start(1);
+
+        Assert.assertEquals(calls.size(), 3);
+        calls.get(2).complete(30);
+        Assert.assertEquals(calls.size(), 4);
+        calls.get(3).complete(40);
+        calls.get(1).complete(20);
+        calls.get(0).complete(10);
+        calls.get(4).complete(50);
+
+        keep.assertEquals(30, 40, 20, 10, 50);
+    }
+
+    /**
+     * Test that a failed mapAsync call is emitted as an error.
+     */
+    @Test
+    public void testMapAsyncError() {
+        Keep<Integer> keep = new Keep<>();
+
+        Stream
+        .from(1, 2, 3)
+        .mapAsync(x -> {
+            CompletableFuture<Integer> f = new CompletableFuture<>();
+            if (x == 2) {
+                f.completeExceptionally(new Exception("error"));
+            } else {
+                f.complete(x);
+            }
+            return f;
+        }, 2)
+        .chain(keep)
+        .start(1);
+
+        keep.assertException(new Exception("error"), 1);
+    }
+
+    /**
+     * Test that an assembly with stateful operations can be subscribed to more than once.
+     */
+    @Test
+    public void testAssemble() {
+        Stream<Integer> assembly = Stream
+        .from(Arrays.asList(1, 2, 3, 4, 5, 6))
+        .assemble()
+        .skip(1)
+        .map(x -> x * 10)
+        .filter(x -> x != 30)
+        .take(3)
+        .accumulate(0, (a, b) -> a + b);
+
+        for (int i = 0; i < 3; i++) {
+            Keep<Integer> keep = new Keep<>();
+            assembly.chain(keep).start(1);
+            keep.assertEquals(0, 20, 60, 110);
+        }
+    }
+
+    /**
+     * Test that defer call the factory for each subscriber.
+     */
+    @Test
+    public void testDefer() {
+        int[] created = { 0 };
+        Stream<List<Integer>> assembly = Stream
+        .defer(() -> Stream.from(++created[0], 2, 3))
+        .toList();
+
+        Keep<List<Integer>> keep1 = new Keep<>();
+        Keep<List<Integer>> keep2 = new Keep<>();
+        assembly.chain(keep1).start(1);
+        assembly.chain(keep2).start(1);
+
+        Assert.assertEquals(keep1.assertSuccess().list, Arrays.asList(Arrays.asList(1, 2, 3)));
+        Assert.assertEquals(keep2.assertSuccess().list, Arrays.asList(Arrays.asList(2, 2, 3)));
+    }
+
+    /**
+     * Test that cache subscribe once to its input and replay all the elements.
+     */
+    @Test
+    public void testCache() {
+        Keep<Integer> keep1 = new Keep<>();
+        Keep<Integer> keep2 = new Keep<>();
+        int[] subscribed = { 0 };
+        Stream<Integer> source = s -> {
+            subscribed[0]++;
+            Stream.from(1, 2, 3, 4, 5).subscribe(s);
+        };
+
+        Stream<Integer> cached = source.cache();
+        cached.chain(keep1).start(1);
+        cached.chain(keep2).start(2);
+
+        keep1.assertEquals(1, 2, 3, 4, 5);
+        keep2.assertEquals(1, 2, 3, 4, 5);
+        Assert.assertEquals(subscribed[0], 1);
+    }
+
+    /**
+     * Test that replay only replay the last elements to a late subscriber.
+     */
+    @Test
+    public void testReplay() {
+        Keep<Integer> keep1 = new Keep<>();
+        Keep<Integer> keep2 = new Keep<>();
+        Integer[] values = new Integer[200];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+
+        Stream<Integer> replay = Stream.from(values).replay(3);
+        replay.chain(keep1).start(1);
+        replay.chain(keep2).start(1);
+
+        Assert.assertEquals(keep1.list, Arrays.asList(values));
+        keep2.assertEquals(197, 198, 199);
+    }
+
+    /**
+     * Test that replay with a max age does not replay old elements.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testReplayAge() throws Exception {
+        Keep<Integer> keep1 = new Keep<>();
+        Keep<Integer> keep2 = new Keep<>();
+
+        Stream<Integer> replay = Stream.from(1, 2, 3).replay(20, TimeUnit.MILLISECONDS);
+        replay.chain(keep1).start(1);
+        Thread.sleep(50);
+        replay.chain(keep2).start(1);
+
+        keep1.assertEquals(1, 2, 3);
+        keep2.assertEquals();
+    }
+
+    /**
+     * Test that cache spill the elements to a file after the in-memory limit, and that dispose delete the file.
+     */
+    @Test
+    public void testCacheSpill() {
+        Keep<String> keep1 = new Keep<>();
+        Keep<String> keep2 = new Keep<>();
+        Keep<String> keep3 = new Keep<>();
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add("value-" + i);
+        }
+        Set<String> before = spillFiles();
+
+        Multicast.Replay<String> cached = Stream.from(values).cache(100, String::getBytes, String::new);
+        cached.chain(keep1).start(7);
+        cached.chain(keep2).start(1);
+
+        Assert.assertEquals(keep1.list, values);
+        Assert.assertEquals(keep2.list, values);
+        keep2.assertSuccess();
+        Set<String> created = spillFiles();
+        created.removeAll(before);
+        Assert.assertEquals(created.size(), 1);
+
+        cached.dispose();
+        created.retainAll(spillFiles());
+        Assert.assertTrue(created.isEmpty(), created.toString());
+        cached.chain(keep3).start(1);
+        keep3.assertException(new IllegalStateException("replay is disposed"));
+    }
+
+    /**
+     * @return the names of the spill files in the temporary directory.
+     */
+    private static Set<String> spillFiles() {
+        String[] names = new File(System.getProperty("java.io.tmpdir")).list((dir, name) -> name.startsWith("react-streams-replay"));
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    /**
+     * A scalar value that count the number of times it is subscribed to.
+     */
+    static class CountingValue extends Streams.Value<Integer> {
+        static int subscribed = 0;
+
+        CountingValue(Integer value) {
+            super(value);
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super Integer> subscriber) {
+            subscribed++;
+            super.subscribe(subscriber);
+        }
+    }
+
+    /**
+     * Test that mapMany and flatMap read scalar and empty inner streams without subscribing to them.
+     */
+    @Test
+    public void testScalarInner() {
+        CountingValue.subscribed = 0;
+        Keep<Integer> keep1 = new Keep<>();
+        Keep<Integer> keep2 = new Keep<>();
+
+        Stream
+        .from(1, 2, 3, 4, 5)
+        .mapMany(x -> x % 2 == 0 ? Stream.<Integer>complete() : new CountingValue(x * 10))
+        .chain(keep1)
+        .start(1);
+
+        Stream
+        .from(1, 2, 3, 4, 5)
+        .concatMapEager(x -> x % 2 == 0 ? Stream.<Integer>complete() : new CountingValue(x * 10), 2)
+        .chain(keep2)
+        .start(1);
+
+        keep1.assertEquals(10, 30, 50);
+        keep2.assertEquals(10, 30, 50);
+        Assert.assertEquals(CountingValue.subscribed, 0);
+    }
+
+    /**
+     * Test that a scalar error from the flatMap function is emitted.
+     */
+    @Test
+    public void testScalarInnerError() {
+        Keep<Integer> keep = new Keep<>();
+
+        Stream
+        .from(1, 2, 3)
+        .flatMap(x -> x == 2 ? Stream.<Integer>error(new Exception("error")) : Stream.from(x))
+        .chain(keep)
+        .start(1);
+
+        keep.assertException(new Exception("error"), 1);
+    }
+
+    /**
+     * Test that continueWith and whenDone read a scalar stream without subscribing to it.
+     */
+    @Test
+    public void testScalarContinue() {
+        CountingValue.subscribed = 0;
+        Keep<Integer> keep1 = new Keep<>();
+        Keep<Integer> keep2 = new Keep<>();
+
+        Stream.from(1, 2).continueWith(() -> new CountingValue(3)).chain(keep1).start(1);
+        Stream.from(1, 2).whenDone(() -> new CountingValue(3)).chain(keep2).start(1);
+
+        keep1.assertEquals(1, 2, 3);
+        keep2.assertEquals(3);
+        Assert.assertEquals(CountingValue.subscribed, 0);
+    }
+
+    /**
+     * Test that fusing a map onto an operation does not change the operation.
+     */
+    @Test
+    public void testFusedStageReuse() {
+        Keep<Integer> keep1 = new Keep<>();
+        Keep<String> keep2 = new Keep<>();
+
+        Stream<Integer> m = Stream.from(1, 2, 3).map(x -> x * 10);
+        Stream<String> n = m.filter(x -> x > 10).map(x -> "s" + x);
+        Assert.assertNotSame(n, m);
+
+        m.chain(keep1).start(1);
+        keep1.assertEquals(10, 20, 30);
+
+        Stream.from(1, 2, 3).map(x -> x * 10).filter(x -> x > 10).map(x -> "s" + x).chain(keep2).start(1);
+        keep2.assertEquals("s20", "s30");
+    }
+
+    /**
+     * Test that a prefetch or capacity that is too large for a queue is rejected.
+     */
+    @Test
+    public void testQueueCapacity() {
+        Assert.assertEquals(new SpscArrayQueue<Integer>(SpscArrayQueue.MAX_CAPACITY >> 10).capacity(), SpscArrayQueue.MAX_CAPACITY >> 10);
+        for (int capacity : new int[] { 0, -1, SpscArrayQueue.MAX_CAPACITY + 1, Integer.MAX_VALUE }) {
+            try {
+                new SpscArrayQueue<Integer>(capacity);
+                Assert.fail("expected an exception for " + capacity);
+            } catch (IllegalArgumentException e) {
+                // expected.
+            }
+        }
+        try {
+            Stream.from(1, 2, 3).toIterable(Integer.MAX_VALUE);
+            Assert.fail("expected an exception");
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+        try {
+            Stream.from(1, 2, 3).flatMap(x -> Stream.from(x), 4, BaseProcessor.UNBOUNDED);
+            Assert.fail("expected an exception");
+        } catch (IllegalArgumentException e) {
+            // expected.
+        }
+    }
+
+    /**
+     * Test that the elements from a spliterator is only taken when they are requested.
+     */
+    @Test
+    public void testFromSpliterator() {
+        AtomicInteger taken = new AtomicInteger();
+        List<Integer> list = Arrays.asList(1, 2, 3, 4);
+        Spliterator<Integer> spliterator = list.spliterator();
+        Stream<Integer> stream = Stream.fromSpliterator(spliterator);
+        Assert.assertEquals(stream.characteristics(), Spliterator.SIZED | Spliterator.ORDERED);
+        Assert.assertEquals(stream.estimateSize(), 4);
+
+        Keep<Integer> keep = new Keep<>();
+        stream.onEach(x -> taken.incrementAndGet()).take(2).chain(keep).start(1);
+        keep.assertEquals(1, 2);
+        // take need the third element to see the end.
+        Assert.assertEquals(taken.get(), 3);
+        Assert.assertEquals(spliterator.estimateSize(), 1);
+    }
+
+    /**
+     * Test that the spliterator of a java stream count down the remaining elements.
+     */
+    @Test
+    public void testToJavaStreamSize() {
+        Spliterator<Integer> spliterator = Stream.from(1, 2, 3, 4).toJavaStream().spliterator();
+        Assert.assertEquals(spliterator.estimateSize(), 4);
+        Assert.assertTrue(spliterator.tryAdvance(x -> Assert.assertEquals(x, Integer.valueOf(1))));
+        Assert.assertEquals(spliterator.estimateSize(), 3);
+        spliterator.forEachRemaining(x -> { });
+        Assert.assertEquals(spliterator.estimateSize(), 0);
+    }
+
+    /**
+     * Test that the demand stay unbounded when <code>Long.MAX_VALUE</code> is requested while elements are emitted.
+     */
+    @Test
+    public void testUnboundedRequestFromOnNext() {
+        for (Stream<Integer> stream : Arrays.asList(Stream.from(1, 2, 3, 4, 5), Stream.from(1, 2, 3, 4, 5).nop())) {
+            List<Long> demands = new ArrayList<>();
+            stream.subscribe(new Subscriber<Integer>() {
+                BaseSubscription<?> subscription;
+
+                @Override
+                public void onSubscribe(Subscription s) {
+                    subscription = (BaseSubscription<?>) s;
+                    s.request(1);
+                }
+
+                @Override
+                public void onNext(Integer value) {
+                    if (value == 1) {
+                        subscription.request(Long.MAX_VALUE);
+                    }
+                    demands.add(subscription.getPendingDemand());
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    Assert.fail("unexpected error", t);
+                }
+
+                @Override
+                public void onComplete() {
+                    demands.add(subscription.getPendingDemand());
+                }
+            });
+            Assert.assertEquals(demands, Collections.nCopies(6, Long.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Test that blockFirst only request a single element.
+     */
+    @Test
+    public void testBlockFirstRequest() {
+        RequestRecorder<Integer> recorder = new RequestRecorder<>();
+        Assert.assertEquals(Stream.counter().chain(recorder).blockFirst(), Integer.valueOf(0));
+        Assert.assertEquals(recorder.requests, Arrays.asList(1L));
+    }
+
+    /**
+     * Test that the size and characteristics of a source is passed through the chain.
+     */
+    @Test
+    public void testCharacteristics() {
+        int sizedOrdered = Spliterator.SIZED | Spliterator.ORDERED;
+
+        Stream<Integer> s1 = Stream.from(1, 2, 3, 4, 5).map(x -> x * 2).skip(1).take(3);
+        Assert.assertEquals(s1.characteristics(), sizedOrdered);
+        Assert.assertEquals(s1.estimateSize(), 3);
+
+        Stream<Integer> s2 = Stream.from(1, 2, 3, 4, 5).filter(x -> x > 2);
+        Assert.assertEquals(s2.characteristics(), Spliterator.ORDERED);
+        Assert.assertEquals(s2.estimateSize(), 5);
+
+        Stream<Integer> s3 = Stream.counter().take(10);
+        Assert.assertEquals(s3.characteristics(), Spliterator.ORDERED | Spliterator.DISTINCT);
+        Assert.assertEquals(s3.estimateSize(), 10);
+
+        Stream<String> s4 = Stream.from(new HashSet<>(Arrays.asList("a", "b"))).onEach(x -> { });
+        Assert.assertEquals(s4.characteristics(), Spliterator.SIZED | Spliterator.DISTINCT);
+        Assert.assertEquals(s4.estimateSize(), 2);
+
+        Stream<Integer> s5 = Stream.from(1, 2, 3).map(x -> x * 2).filter(x -> x > 2);
+        Assert.assertEquals(s5.characteristics(), Spliterator.ORDERED);
+
+        Keep<List<Integer>> keep = new Keep<>();
+        s1.toList().chain(keep).start(1);
+        Assert.assertEquals(keep.assertSuccess().list, Arrays.asList(Arrays.asList(4, 6, 8)));
+    }
+
+    /**
+     * Test that an error from the flatMap function is emitted.
+     */
+    @Test
+    public void testFlatMapError() {
+        Keep<Integer> keep = new Keep<>();
+
+        Stream
+        .from(1, 2, 3)
+        .flatMap(x -> {
+            if (x == 2) {
+                throw new Exception("error");
+            }
+            return Stream.from(x);
+        })
+        .chain(keep)
+        .start(1);
+
+        keep.assertException(new Exception("error"), 1);
+    }
+
     /**
      * Test each operation.
      */
@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams.test;
+
+import io.github.bckfnn.reactstreams.Scheduler;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A scheduler with a virtual clock that only move when {@link #advance(long, TimeUnit)} is called.
+ * The tasks are run on the thread that advance the clock, so the time based operations can be tested
+ * without waiting and without depending on the speed of the machine.
+ */
+public class TestScheduler implements Scheduler {
+    private final PriorityQueue<Item> tasks = new PriorityQueue<>();
+    private long now = 0;
+    private long seq = 0;
+
+    @Override
+    public synchronized Task schedule(Runnable task, long delay, TimeUnit unit) {
+        Item item = new Item(task, now + unit.toNanos(Math.max(0, delay)), seq++);
+        tasks.offer(item);
+        return item;
+    }
+
+    @Override
+    public synchronized long now(TimeUnit unit) {
+        return unit.convert(now, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Move the clock forward and run the tasks that expire, in the order of their expiry time.
+     * Tasks that are scheduled by the tasks are also run if they expire before the new time.
+     * @param time the time to move the clock.
+     * @param unit the unit of the time.
+     */
+    public void advance(long time, TimeUnit unit) {
+        long target;
+        synchronized (this) {
+            target = now + unit.toNanos(time);
+        }
+        for (;;) {
+            Item item;
+            synchronized (this) {
+                item = tasks.peek();
+                if (item == null || item.time > target) {
+                    now = target;
+                    return;
+                }
+                tasks.poll();
+                now = item.time;
+            }
+            if (item.cancel()) {
+                item.task.run();
+            }
+        }
+    }
+
+    /**
+     * A scheduled task, ordered by the expiry time and then by the order it was scheduled.
+     */
+    private static class Item implements Task, Comparable<Item> {
+        final Runnable task;
+        final long time;
+        final long seq;
+        /** set when the task is cancelled or is about to run. */
+        private boolean finished = false;
+
+        Item(Runnable task, long time, long seq) {
+            this.task = task;
+            this.time = time;
+            this.seq = seq;
+        }
+
+        @Override
+        public synchronized boolean cancel() {
+            boolean c = !finished;
+            finished = true;
+            return c;
+        }
+
+        @Override
+        public int compareTo(Item o) {
+            if (time != o.time) {
+                return Long.compare(time, o.time);
+            }
+            return Long.compare(seq, o.seq);
+        }
+    }
+}
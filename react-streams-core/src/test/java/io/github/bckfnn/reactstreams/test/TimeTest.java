@@ -0,0 +1,187 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.bckfnn.reactstreams.test;
+
+import io.github.bckfnn.reactstreams.HashedWheelTimer;
+import io.github.bckfnn.reactstreams.Stream;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of the timer and the time based operations. The operations run on a {@link TestScheduler}, so the
+ * tests move the clock themselves and does not depend on the speed of the machine.
+ */
+public class TimeTest {
+
+    /**
+     * A large number of cancelled tasks does not run, and the remaining tasks run in order.
+     * @throws Exception when the test fails.
+     */
+    @Test
+    public void testWheelTimer() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer("test-timer", 1, TimeUnit.MILLISECONDS, 16);
+        try {
+            AtomicInteger ran = new AtomicInteger();
+            for (int i = 0; i < 1000000; i++) {
+                timer.schedule(ran::incrementAndGet, 5 + i % 100, TimeUnit.MILLISECONDS).cancel();
+            }
+            int[] order = new int[3];
+            AtomicInteger next = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(3);
+            for (int i = 0; i < 3; i++) {
+                int n = i;
+                timer.schedule(() -> {
+                    order[next.getAndIncrement()] = n;
+                    done.countDown();
+                }, 30, TimeUnit.MILLISECONDS);
+            }
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(order, new int[] { 0, 1, 2 });
+            Assert.assertEquals(ran.get(), 0);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Stopping the timer end the worker thread and cancel the tasks that have not run.
+     */
+    @Test
+    public void testWheelTimerStop() {
+        HashedWheelTimer timer = new HashedWheelTimer("stopped-timer", 1, TimeUnit.MILLISECONDS, 16);
+        AtomicInteger ran = new AtomicInteger();
+        HashedWheelTimer.Task task = timer.schedule(ran::incrementAndGet, 1, TimeUnit.HOURS);
+        timer.stop();
+        Assert.assertFalse(task.cancel());
+        Assert.assertFalse(timer.schedule(ran::incrementAndGet, 0, TimeUnit.MILLISECONDS).cancel());
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            Assert.assertFalse(t.getName().equals("stopped-timer"), "worker is running");
+        }
+        Assert.assertEquals(ran.get(), 0);
+    }
+
+    /**
+     * Test interval.
+     */
+    @Test
+    public void testInterval() {
+        TestScheduler scheduler = new TestScheduler();
+        Keep<Long> keep = new Keep<>();
+        Stream.interval(5, TimeUnit.MILLISECONDS, scheduler).take(3).chain(keep).start(1);
+
+        scheduler.advance(15, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(keep.list, Arrays.asList(0L, 1L, 2L));
+        // take complete when it see the next element.
+        scheduler.advance(5, TimeUnit.MILLISECONDS);
+        keep.assertEquals(0L, 1L, 2L);
+    }
+
+    /**
+     * Test timeout.
+     */
+    @Test
+    public void testTimeout() {
+        TestScheduler scheduler = new TestScheduler();
+        Keep<Long> keep1 = new Keep<>();
+        Stream.interval(5, TimeUnit.MILLISECONDS, scheduler).take(3)
+        .timeout(1, TimeUnit.SECONDS, scheduler).chain(keep1).start(1);
+        scheduler.advance(20, TimeUnit.MILLISECONDS);
+        keep1.assertEquals(0L, 1L, 2L);
+
+        Keep<Long> keep2 = new Keep<>();
+        Stream.interval(1, TimeUnit.SECONDS, scheduler)
+        .timeout(20, TimeUnit.MILLISECONDS, scheduler).chain(keep2).start(1);
+        scheduler.advance(19, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(keep2.error, null);
+        scheduler.advance(1, TimeUnit.MILLISECONDS);
+        keep2.assertException(new TimeoutException("no element within 20 MILLISECONDS"));
+        // the interval is cancelled.
+        scheduler.advance(5, TimeUnit.SECONDS);
+        Assert.assertTrue(keep2.list.isEmpty());
+    }
+
+    /**
+     * Test delay.
+     */
+    @Test
+    public void testDelay() {
+        TestScheduler scheduler = new TestScheduler();
+        Keep<Integer> keep = new Keep<>();
+        Stream.from(1, 2, 3, 4, 5).delay(30, TimeUnit.MILLISECONDS, scheduler).chain(keep).start(10);
+
+        scheduler.advance(29, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(keep.list.isEmpty());
+        scheduler.advance(1, TimeUnit.MILLISECONDS);
+        keep.assertEquals(1, 2, 3, 4, 5);
+    }
+
+    /**
+     * Test debounce, sample and throttleFirst on bursts of elements.
+     */
+    @Test
+    public void testDebounce() {
+        TestScheduler scheduler = new TestScheduler();
+        Keep<List<Integer>> debounce = new Keep<>();
+        Keep<List<Integer>> throttle = new Keep<>();
+        Keep<List<Integer>> sample = new Keep<>();
+        bursts(scheduler).debounce(50, TimeUnit.MILLISECONDS, scheduler).toList().chain(debounce).start(1);
+        bursts(scheduler).throttleFirst(50, TimeUnit.MILLISECONDS, scheduler).toList().chain(throttle).start(1);
+        bursts(scheduler).sample(70, TimeUnit.MILLISECONDS, scheduler).toList().chain(sample).start(1);
+
+        scheduler.advance(1, TimeUnit.SECONDS);
+        Assert.assertEquals(debounce.assertSuccess().list, Arrays.asList(Arrays.asList(9, 19, 29)));
+        Assert.assertEquals(throttle.assertSuccess().list, Arrays.asList(Arrays.asList(0, 10, 20)));
+        Assert.assertEquals(sample.assertSuccess().list, Arrays.asList(Arrays.asList(9, 19, 29)));
+    }
+
+    /**
+     * @param scheduler the scheduler.
+     * @return bursts of 10 elements every 100 milliseconds.
+     */
+    private static Stream<Integer> bursts(TestScheduler scheduler) {
+        return Stream.interval(100, TimeUnit.MILLISECONDS, scheduler).take(3)
+                .flatMap(x -> Stream.counter(x.intValue() * 10).take(10));
+    }
+
+    /**
+     * Test that bufferTimeout emit full lists, and partial lists when the latency expire.
+     */
+    @Test
+    public void testBufferTimeout() {
+        TestScheduler scheduler = new TestScheduler();
+        Keep<List<Integer>> keep1 = new Keep<>();
+        Stream.from(1, 2, 3, 4, 5).bufferTimeout(2, 1, TimeUnit.SECONDS, scheduler).chain(keep1).start(1);
+        Assert.assertEquals(keep1.assertSuccess().list, Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5)));
+
+        // the first list is emitted when the latency expire, long before the last element.
+        Keep<List<Long>> keep2 = new Keep<>();
+        Stream.concat(Stream.interval(10, TimeUnit.MILLISECONDS, scheduler).take(3),
+                Stream.interval(2, TimeUnit.SECONDS, scheduler).take(1))
+        .bufferTimeout(100, 100, TimeUnit.MILLISECONDS, scheduler).chain(keep2).start(1);
+        scheduler.advance(109, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(keep2.list.isEmpty());
+        scheduler.advance(1, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(keep2.list, Arrays.asList(Arrays.asList(0L, 1L, 2L)));
+        scheduler.advance(5, TimeUnit.SECONDS);
+        Assert.assertEquals(keep2.assertSuccess().list, Arrays.asList(Arrays.asList(0L, 1L, 2L), Arrays.asList(0L)));
+    }
+}